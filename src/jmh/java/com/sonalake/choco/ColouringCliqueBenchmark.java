@@ -0,0 +1,62 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the {@link ColouringConfig.Edges ways of constraining the edges} of a colouring model, over the
+ * graphs in {@link ColouringCorpus}. There's no limit on how often a colour can be used here, so this is the
+ * plain colouring problem.
+ * <p>
+ * - build: a new model, with its variables and constraints, but no solving; the gc profiler's allocation per
+ * operation is the memory it takes
+ * - solve: a new model, searched for at most {@code nodes} nodes, or until the best colouring is proven if that's
+ * sooner, so on the graphs that aren't proven in time this is the time per {@code nodes} nodes
+ */
+@State(Scope.Benchmark)
+public class ColouringCliqueBenchmark {
+
+  // the enums aren't public, so they're named here, for the generated benchmark code to set
+  @Param({"MYCIEL3", "MYCIEL4", "MYCIEL5", "QUEEN5_5", "QUEEN6_6", "QUEEN7_7", "QUEEN8_8"})
+  public String graph;
+
+  @Param({"PAIRWISE", "CLIQUES"})
+  public String edges;
+
+  @Param({"10000"})
+  public long nodes;
+
+  private Graph<Integer, DefaultEdge> corpusGraph;
+  private ColouringConfig config;
+
+  @Setup
+  public void setUp() {
+    corpusGraph = ColouringCorpus.valueOf(graph).graph();
+    config = ColouringConfig.DEFAULT.withEdges(ColouringConfig.Edges.valueOf(edges));
+  }
+
+  @Benchmark
+  public Model build() {
+    Model model = new Model("colouring");
+    GraphColouring.buildModel(model, corpusGraph, corpusGraph.vertexSet().size(), config);
+    return model;
+  }
+
+  @Benchmark
+  public long solve() {
+    Model model = build();
+    Solver solver = model.getSolver();
+    solver.limitNode(nodes);
+    while (solver.solve()) {
+      // keep going until the best colouring is proven, or we run out of nodes
+    }
+    return solver.getNodeCount();
+  }
+}
@@ -0,0 +1,91 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.jgrapht.Graph;
+import org.jgrapht.generate.GnmRandomGraphGenerator;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.SimpleGraph;
+import org.jgrapht.util.SupplierUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the {@link ColouringConfig.Objective ways of counting the colours used} on random graphs of 100 to 5000
+ * vertices. Each graph has four times as many edges as vertices, and a colour can't be used for more than a
+ * quarter of the vertices, so the limit counts.
+ * <p>
+ * - build: a new model, with its variables and constraints, but no solving; the gc profiler's allocation per
+ * operation is the memory it takes
+ * - solve: a new model, searched until a colouring gets down to the lower bound, or for at most {@code nodes}
+ * nodes
+ * <p>
+ * With the heuristic bound, as by default, the colours are already few, and so are the counting variables of the
+ * bitset encoding; {@code -p heuristicBound=false} allows a colour per vertex, which is where the two really
+ * differ. That doesn't fit in 2GB past 1000 vertices, whatever counts the colours, so it needs
+ * {@code -p vertices=100,500,1000} as well.
+ */
+@State(Scope.Benchmark)
+public class ColouringObjectiveBenchmark {
+
+  @Param({"100", "500", "1000", "2000", "5000"})
+  public int vertices;
+
+  // the enum isn't public, so it's named here, for the generated benchmark code to set
+  @Param({"CARDINALITY", "AT_MOST_NVALUES"})
+  public String objective;
+
+  @Param({"true"})
+  public boolean heuristicBound;
+
+  @Param({"10000"})
+  public long nodes;
+
+  private Graph<Integer, DefaultEdge> graph;
+  private ColouringConfig config;
+
+  @Setup
+  public void setUp() {
+    graph = random(vertices, 4 * vertices);
+    config = ColouringConfig.DEFAULT.withObjective(ColouringConfig.Objective.valueOf(objective))
+      .withHeuristicBound(heuristicBound);
+  }
+
+  @Benchmark
+  public Model build() {
+    return buildModel().model();
+  }
+
+  @Benchmark
+  public int solve() {
+    ColouringModel colouring = buildModel();
+    Solver solver = colouring.model().getSolver();
+    solver.limitNode(nodes);
+    int colours = -1;
+    while (solver.solve()) {
+      colours = colouring.solution().colourCount();
+      if (colours <= colouring.lowerBound()) {
+        break;
+      }
+    }
+    return colours;
+  }
+
+
+  private ColouringModel buildModel() {
+    return GraphColouring.buildModel(new Model("colouring"), graph, vertices / 4, config);
+  }
+
+  /**
+   * @return a random graph with this many vertices, numbered from 0, and edges, the same each time
+   */
+  private static Graph<Integer, DefaultEdge> random(int vertexCount, int edgeCount) {
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(SupplierUtil.createIntegerSupplier(),
+      SupplierUtil.createDefaultEdgeSupplier(), false);
+    new GnmRandomGraphGenerator<Integer, DefaultEdge>(vertexCount, edgeCount, vertexCount).generateGraph(graph);
+    return graph;
+  }
+}
@@ -0,0 +1,54 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the {@link ColouringConfig.Symmetry ways of breaking the symmetry between colours} over the graphs in
+ * {@link ColouringCorpus}, by how long it takes to find the best colouring and then prove there's no better one,
+ * which is where the symmetry costs the most.
+ * <p>
+ * As with {@link ColouringCliqueBenchmark}, there's no limit on how often a colour can be used. Each solve is
+ * stopped after {@code limitSeconds}, so a time of about that long means the colouring wasn't proven the best.
+ */
+@State(Scope.Benchmark)
+public class ColouringSymmetryBenchmark {
+
+  // the enums aren't public, so they're named here, for the generated benchmark code to set
+  @Param({"MYCIEL3", "MYCIEL4", "MYCIEL5", "QUEEN5_5", "QUEEN6_6", "QUEEN7_7", "QUEEN8_8"})
+  public String graph;
+
+  @Param({"NONE", "CLIQUE", "PRECEDENCE"})
+  public String symmetry;
+
+  @Param({"20"})
+  public long limitSeconds;
+
+  private Graph<Integer, DefaultEdge> corpusGraph;
+  private ColouringConfig config;
+
+  @Setup
+  public void setUp() {
+    corpusGraph = ColouringCorpus.valueOf(graph).graph();
+    config = ColouringConfig.DEFAULT.withSymmetry(ColouringConfig.Symmetry.valueOf(symmetry));
+  }
+
+  @Benchmark
+  public long solve() {
+    Model model = new Model("colouring");
+    GraphColouring.buildModel(model, corpusGraph, corpusGraph.vertexSet().size(), config);
+    Solver solver = model.getSolver();
+    solver.limitTime(limitSeconds * 1000);
+    while (solver.solve()) {
+      // keep going until the best colouring is proven, or the time runs out
+    }
+    return solver.getNodeCount();
+  }
+}
@@ -0,0 +1,52 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building and solving the colouring model of {@link GraphColouring}, on generalised Petersen graphs of 2n
+ * vertices, where 5 is the Petersen graph of the sample itself.
+ * <p>
+ * - build: a new model, with its variables and constraints, but no solving
+ * - solve: a new model, searched until the least number of colours is proven
+ */
+@State(Scope.Benchmark)
+public class GraphColouringBenchmark {
+
+  // each colour can be used for at most this many vertices, as in the sample
+  private static final int MAX_USAGE_PER_COLOUR = 3;
+
+  @Param({"4", "5", "6"})
+  public int n;
+
+  private Graph<Integer, DefaultEdge> graph;
+
+  @Setup
+  public void setUp() {
+    graph = GraphColouring.petersen(n);
+  }
+
+  @Benchmark
+  public Model build() {
+    Model model = new Model("colouring");
+    GraphColouring.buildModel(model, graph, MAX_USAGE_PER_COLOUR);
+    return model;
+  }
+
+  @Benchmark
+  public long solve() {
+    Model model = build();
+    Solver solver = model.getSolver();
+    while (solver.solve()) {
+      // keep going until the best colouring is proven
+    }
+    return solver.getSolutionCount();
+  }
+}
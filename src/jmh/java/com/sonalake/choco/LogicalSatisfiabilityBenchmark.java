@@ -0,0 +1,56 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.variables.BoolVar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Building and solving the clauses of {@link LogicalSatisfiability}, on random 3-SAT statements with 4.26
+ * clauses per variable, which is about where they're hardest. The statements are the same on every run, and some
+ * of them can't be satisfied, which the search then has to prove.
+ * <p>
+ * - build: a new model, with its variables and clauses, but no solving
+ * - solve: a new model, searched for the first solution
+ */
+@State(Scope.Benchmark)
+public class LogicalSatisfiabilityBenchmark {
+
+  private static final double CLAUSES_PER_VARIABLE = 4.26;
+  private static final int LITERALS_PER_CLAUSE = 3;
+
+  @Param({"25", "50", "100"})
+  public int variables;
+
+  private int[][] clauses;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(variables);
+    clauses = new int[(int) (CLAUSES_PER_VARIABLE * variables)][LITERALS_PER_CLAUSE];
+    for (int[] clause : clauses) {
+      for (int i = 0; i != clause.length; i++) {
+        int variable = 1 + random.nextInt(variables);
+        clause[i] = random.nextBoolean() ? variable : -variable;
+      }
+    }
+  }
+
+  @Benchmark
+  public Model build() {
+    Model model = new Model("NSAT");
+    BoolVar[] vars = model.boolVarArray("x", variables);
+    LogicalSatisfiability.addClauses(model, vars, clauses);
+    return model;
+  }
+
+  @Benchmark
+  public boolean solve() {
+    return build().getSolver().solve();
+  }
+}
@@ -0,0 +1,46 @@
+package com.sonalake.choco;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Compares the allDifferent consistency levels over the easy, medium and hardest puzzles we keep in
+ * {@link SudokuCorpus}, so we can see which one is fastest for each.
+ * <p>
+ * Each call solves the next puzzle of the corpus on a reused {@link SudokuEngine}, without the singles pass, so
+ * every puzzle is down to choco's propagation, and the results are an average over all of them.
+ */
+@State(Scope.Benchmark)
+public class SudokuConsistencyBenchmark {
+
+  // the enums aren't public, so they're named here, for the generated benchmark code to set
+  @Param({"EASY", "MEDIUM", "HARDEST"})
+  public String corpus;
+
+  @Param({"AC", "BC", "FC", "NEQS", "DEFAULT"})
+  public String consistency;
+
+  private List<int[][]> puzzles;
+  private SudokuEngine engine;
+  private int[][] solution;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    puzzles = SudokuCorpus.valueOf(corpus).puzzles();
+    engine = new SudokuEngine(9, SudokuConfig.DEFAULT.withConsistency(SudokuConfig.Consistency.valueOf(consistency))
+      .withSingles(false));
+    solution = new int[9][9];
+  }
+
+  @Benchmark
+  public boolean solve() {
+    next = (next + 1) % puzzles.size();
+    return engine.solve(puzzles.get(next), solution);
+  }
+}
@@ -0,0 +1,114 @@
+package com.sonalake.choco;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how long a {@link SudokuHintSession} takes to answer each move, over the puzzles in
+ * {@link SudokuCorpus} that have a solution. The player takes the hint when there is one, and otherwise fills the
+ * first empty cell from the solution, as a player would after working something out the hard way.
+ * <p>
+ * - move: a placement and then the hint for the grid it leaves, which is what the app does on every move. Each
+ * game is played through to the end and then undone a move at a time, as undoing is a move in the app too,
+ * before going on to the next puzzle
+ * - start: starting a session, which builds the model, and its first hint
+ */
+@State(Scope.Benchmark)
+public class SudokuHintBenchmark {
+
+  // the enum isn't public, so it's named here, for the generated benchmark code to set
+  @Param({"EASY", "MEDIUM", "HARDEST"})
+  public String corpus;
+
+  private final List<int[][]> puzzles = new ArrayList<>();
+  private final List<SudokuHintSession> sessions = new ArrayList<>();
+  // the moves each game is played with, as the row, column and value
+  private final List<int[][]> games = new ArrayList<>();
+
+  // the game being played, how many of its moves have been made, and whether they're being undone
+  private int game;
+  private int moves;
+  private boolean undoing;
+  // the puzzle the last session was started for
+  private int started;
+
+  @Setup
+  public void setUp() {
+    for (int[][] puzzle : SudokuCorpus.valueOf(corpus).puzzles()) {
+      int[][] solution = Sudoku.solve(puzzle);
+      if (solution == null) {
+        continue;
+      }
+      puzzles.add(puzzle);
+
+      // the hints only depend on the grid, so the moves are the same every time the game is played
+      SudokuHintSession session = new SudokuHintSession(puzzle);
+      List<int[]> played = new ArrayList<>();
+      int[] next;
+      while ((next = nextMove(session, session.hint(), solution)) != null) {
+        session.place(next[0], next[1], next[2]);
+        played.add(next);
+      }
+      for (int i = played.size() - 1; i >= 0; i--) {
+        session.erase(played.get(i)[0], played.get(i)[1]);
+      }
+      if (!played.isEmpty()) {
+        sessions.add(session);
+        games.add(played.toArray(new int[0][]));
+      }
+    }
+  }
+
+  @Benchmark
+  public SudokuHintSession.Hint move() {
+    SudokuHintSession session = sessions.get(game);
+    int[][] played = games.get(game);
+    if (undoing) {
+      int[] move = played[--moves];
+      session.erase(move[0], move[1]);
+    } else {
+      int[] move = played[moves++];
+      session.place(move[0], move[1], move[2]);
+    }
+    SudokuHintSession.Hint hint = session.hint();
+
+    if (!undoing && moves == played.length) {
+      undoing = true;
+    } else if (undoing && moves == 0) {
+      undoing = false;
+      game = (game + 1) % games.size();
+    }
+    return hint;
+  }
+
+  @Benchmark
+  public SudokuHintSession.Hint start() {
+    started = (started + 1) % puzzles.size();
+    return new SudokuHintSession(puzzles.get(started)).hint();
+  }
+
+
+  /**
+   * @return the player's next move, as the row, column and value, or null if the grid is full
+   */
+  private static int[] nextMove(SudokuHintSession session, SudokuHintSession.Hint hint, int[][] solution) {
+    if (hint != null) {
+      return new int[]{hint.row(), hint.col(), hint.value()};
+    }
+    int[][] filled = session.filled();
+    for (int row = 0; row != filled.length; row++) {
+      for (int col = 0; col != filled.length; col++) {
+        if (filled[row][col] == 0) {
+          return new int[]{row, col, solution[row][col]};
+        }
+      }
+    }
+    return null;
+  }
+}
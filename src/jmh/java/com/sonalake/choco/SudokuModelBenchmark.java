@@ -0,0 +1,124 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Building and solving sudoku models, for each size of grid. The puzzles are made by shuffling a known full grid
+ * and then blanking out some of its cells, and each call takes the next one, so the results are an average over
+ * all of them.
+ * <p>
+ * - build: a new model, with its variables and constraints, but no solving
+ * - solve: a new model, solved, as {@link Sudoku#solve(int[][])} does it
+ * - solveOnEngine: the same puzzle on a reused {@link SudokuEngine}, without the singles, so it's all choco
+ */
+@State(Scope.Benchmark)
+public class SudokuModelBenchmark {
+
+  private static final int PUZZLE_COUNT = 64;
+
+  // the fraction of cells that are left as predefined values in the generated puzzles
+  private static final double GIVEN_RATIO = 0.6;
+
+  @Param({"9", "16", "25"})
+  public int size;
+
+  private int[][][] puzzles;
+  private SudokuEngine engine;
+  private int[][] solution;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    puzzles = generatePuzzles(size, PUZZLE_COUNT, new Random(size));
+    engine = new SudokuEngine(size, SudokuConfig.DEFAULT.withSingles(false));
+    solution = new int[size][size];
+  }
+
+  @Benchmark
+  public Model build() {
+    Model model = new Model("sudoku");
+    Sudoku.applyConnectionConstraints(model, Sudoku.buildGrid(model, nextPuzzle()));
+    return model;
+  }
+
+  @Benchmark
+  public int[][] solve() {
+    return Sudoku.solve(nextPuzzle());
+  }
+
+  @Benchmark
+  public boolean solveOnEngine() {
+    return engine.solve(nextPuzzle(), solution);
+  }
+
+  private int[][] nextPuzzle() {
+    next = (next + 1) % puzzles.length;
+    return puzzles[next];
+  }
+
+
+  /**
+   * Make puzzles that we know have a solution, by starting with the simple pattern of a full grid, shuffling it
+   * with moves that keep it valid (relabelling values, swapping rows in the same band, swapping bands, and the
+   * same for columns), and then blanking out cells.
+   */
+  static int[][][] generatePuzzles(int size, int count, Random random) {
+    int squareSize = SudokuLayout.of(size).squareSize();
+    int[][][] puzzles = new int[count][][];
+
+    for (int p = 0; p != count; p++) {
+      int[] values = shuffledIndexes(size, 1, random);
+      int[] rows = shuffledLines(squareSize, random);
+      int[] columns = shuffledLines(squareSize, random);
+
+      int[][] puzzle = new int[size][size];
+      for (int row = 0; row != size; row++) {
+        for (int col = 0; col != size; col++) {
+          if (random.nextDouble() < GIVEN_RATIO) {
+            int r = rows[row];
+            int c = columns[col];
+            puzzle[row][col] = values[(squareSize * (r % squareSize) + r / squareSize + c) % size];
+          }
+        }
+      }
+      puzzles[p] = puzzle;
+    }
+    return puzzles;
+  }
+
+  /**
+   * Shuffle the bands, and the lines within each band
+   */
+  private static int[] shuffledLines(int squareSize, Random random) {
+    int[] bands = shuffledIndexes(squareSize, 0, random);
+    int[] lines = new int[squareSize * squareSize];
+    for (int band = 0; band != squareSize; band++) {
+      int[] withinBand = shuffledIndexes(squareSize, 0, random);
+      for (int i = 0; i != squareSize; i++) {
+        lines[band * squareSize + i] = bands[band] * squareSize + withinBand[i];
+      }
+    }
+    return lines;
+  }
+
+  private static int[] shuffledIndexes(int count, int first, Random random) {
+    int[] indexes = new int[count];
+    for (int i = 0; i != count; i++) {
+      indexes[i] = first + i;
+    }
+    for (int i = count - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = indexes[i];
+      indexes[i] = indexes[j];
+      indexes[j] = swap;
+    }
+    return indexes;
+  }
+}
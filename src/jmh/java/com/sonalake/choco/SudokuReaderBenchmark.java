@@ -0,0 +1,94 @@
+package com.sonalake.choco;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares how fast a file of puzzles can be read and parsed into grids, without solving them. The file is every
+ * puzzle of the {@link SudokuCorpus} files, repeated {@code copies} times.
+ * <p>
+ * - buffered: a BufferedReader, with a String per line that's then parsed by {@link Sudoku#parse(CharSequence)}
+ * - mapped: a {@link SudokuMappedReader} over the whole file
+ */
+@State(Scope.Benchmark)
+public class SudokuReaderBenchmark {
+
+  @Param({"100", "1000"})
+  public int copies;
+
+  private Path file;
+
+  @Setup
+  public void setUp() throws IOException {
+    ByteArrayOutputStream corpora = new ByteArrayOutputStream();
+    for (String resource : new String[]{"easy.txt", "medium.txt", "hardest.txt"}) {
+      try (InputStream in = SudokuReaderBenchmark.class.getResourceAsStream("/sudoku/" + resource)) {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+          corpora.write(buffer, 0, read);
+        }
+      }
+      corpora.write('\n');
+    }
+
+    file = Files.createTempFile("sudoku", ".txt");
+    try (OutputStream out = Files.newOutputStream(file)) {
+      for (int i = 0; i != copies; i++) {
+        corpora.writeTo(out);
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public long buffered() throws IOException {
+    long puzzles = 0;
+    try (BufferedReader reader = Files.newBufferedReader(file)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.charAt(0) == '#') {
+          continue;
+        }
+        puzzles += checksum(Sudoku.parse(line));
+      }
+    }
+    return puzzles;
+  }
+
+  @Benchmark
+  public long mapped() throws IOException {
+    long puzzles = 0;
+    try (SudokuMappedReader reader = SudokuMappedReader.open(file)) {
+      int[][] predefinedRows;
+      while ((predefinedRows = reader.next()) != null) {
+        puzzles += checksum(predefinedRows);
+      }
+    }
+    return puzzles;
+  }
+
+  /**
+   * Counts the puzzle, reading one of its values so the grid is used
+   */
+  private static long checksum(int[][] predefinedRows) {
+    return predefinedRows[0][0] >= 0 ? 1 : 0;
+  }
+}
@@ -0,0 +1,49 @@
+package com.sonalake.choco;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Compares the search strategies, with and without restarts, over the easy, medium and hardest puzzles we keep
+ * in {@link SudokuCorpus}, so we can pick the fastest one rather than going with choco's default.
+ * <p>
+ * Each call solves the next puzzle of the corpus on a reused {@link SudokuEngine} with the singles pass on, as it
+ * would be in the batch solver, so the search only has whatever the singles left over.
+ */
+@State(Scope.Benchmark)
+public class SudokuStrategyBenchmark {
+
+  // the enums aren't public, so they're named here, for the generated benchmark code to set
+  @Param({"EASY", "MEDIUM", "HARDEST"})
+  public String corpus;
+
+  @Param({"DEFAULT", "DOM_WDEG", "ACTIVITY", "MIN_DOM", "LAST_CONFLICT", "RANDOM"})
+  public String strategy;
+
+  @Param({"false", "true"})
+  public boolean restarts;
+
+  private List<int[][]> puzzles;
+  private SudokuEngine engine;
+  private int[][] solution;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    puzzles = SudokuCorpus.valueOf(corpus).puzzles();
+    engine = new SudokuEngine(9, SudokuConfig.DEFAULT.withStrategy(SudokuConfig.Strategy.valueOf(strategy))
+      .withRestarts(restarts));
+    solution = new int[9][9];
+  }
+
+  @Benchmark
+  public boolean solve() {
+    next = (next + 1) % puzzles.size();
+    return engine.solve(puzzles.get(next), solution);
+  }
+}
@@ -0,0 +1,144 @@
+package com.sonalake.choco;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares how fast the {@link SudokuVariant variants} solve against the classic puzzles they're made from, over
+ * the puzzles we keep in {@link SudokuCorpus}. Each call solves the next puzzle that has a solution:
+ * <p>
+ * - classic: as a classic puzzle, on a normal engine
+ * - jigsaw: on an engine built for jigsaws, with the squares posted as the puzzle's regions. The search is the
+ * same, so this is the cost of posting and removing the regions with each puzzle
+ * - killer: with the same predefined values, and cages cut at random from its solution
+ * - killerCages: a killer with only the cages, which is how killers are usually published
+ */
+@State(Scope.Benchmark)
+public class SudokuVariantBenchmark {
+
+  // the biggest cage we cut
+  private static final int MAX_CAGE = 5;
+
+  // the enum isn't public, so it's named here, for the generated benchmark code to set
+  @Param({"EASY", "MEDIUM", "HARDEST"})
+  public String corpus;
+
+  private List<int[][]> puzzles;
+  private List<SudokuVariant> killers;
+  private SudokuVariant classic;
+  private int[][] empty;
+  private SudokuEngine engine;
+  private SudokuEngine jigsawEngine;
+  private int[][] solution;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(0);
+    puzzles = new ArrayList<>();
+    killers = new ArrayList<>();
+    for (int[][] puzzle : SudokuCorpus.valueOf(corpus).puzzles()) {
+      int[][] solved = Sudoku.solve(puzzle);
+      if (solved != null) {
+        puzzles.add(puzzle);
+        killers.add(new SudokuVariant(SudokuLayout.of(9), cutCages(solved, random)));
+      }
+    }
+    classic = SudokuVariant.classic(9);
+    empty = new int[9][9];
+    engine = new SudokuEngine(9);
+    jigsawEngine = new SudokuEngine(9, SudokuConfig.DEFAULT, true);
+    solution = new int[9][9];
+  }
+
+  @Benchmark
+  public boolean classic() {
+    next = (next + 1) % puzzles.size();
+    return engine.solve(puzzles.get(next), classic, solution);
+  }
+
+  @Benchmark
+  public boolean jigsaw() {
+    next = (next + 1) % puzzles.size();
+    return jigsawEngine.solve(puzzles.get(next), classic, solution);
+  }
+
+  @Benchmark
+  public boolean killer() {
+    next = (next + 1) % puzzles.size();
+    return engine.solve(puzzles.get(next), killers.get(next), solution);
+  }
+
+  @Benchmark
+  public boolean killerCages() {
+    next = (next + 1) % puzzles.size();
+    return engine.solve(empty, killers.get(next), solution);
+  }
+
+
+  /**
+   * Cut a solved grid into cages of up to {@link #MAX_CAGE} cells, each growing from the first cell that isn't
+   * in a cage yet into random neighbours with values it doesn't have
+   */
+  private static List<SudokuCage> cutCages(int[][] solution, Random random) {
+    int size = solution.length;
+    boolean[] caged = new boolean[size * size];
+    List<SudokuCage> cages = new ArrayList<>();
+    for (int first = 0; first != caged.length; first++) {
+      if (caged[first]) {
+        continue;
+      }
+      int target = 1 + random.nextInt(MAX_CAGE);
+      List<Integer> cells = new ArrayList<>();
+      long values = 0;
+      int total = 0;
+      int cell = first;
+      while (cell >= 0) {
+        caged[cell] = true;
+        cells.add(cell);
+        int value = solution[cell / size][cell % size];
+        values |= 1L << value;
+        total += value;
+        cell = cells.size() < target ? nextCell(solution, cells, caged, values, random) : -1;
+      }
+
+      int[] cageCells = new int[cells.size()];
+      for (int i = 0; i != cageCells.length; i++) {
+        cageCells[i] = cells.get(i);
+      }
+      cages.add(new SudokuCage(total, cageCells));
+    }
+    return cages;
+  }
+
+  /**
+   * @return a random cell next to the cage, that's not in a cage and has a value the cage doesn't, or -1 if
+   * there isn't one
+   */
+  private static int nextCell(int[][] solution, List<Integer> cells, boolean[] caged, long values,
+                              Random random) {
+    int size = solution.length;
+    List<Integer> candidates = new ArrayList<>();
+    for (int cell : cells) {
+      int row = cell / size;
+      int col = cell % size;
+      int[][] neighbours = {{row - 1, col}, {row + 1, col}, {row, col - 1}, {row, col + 1}};
+      for (int[] neighbour : neighbours) {
+        int r = neighbour[0];
+        int c = neighbour[1];
+        if (r >= 0 && r < size && c >= 0 && c < size && !caged[r * size + c]
+          && (values & 1L << solution[r][c]) == 0) {
+          candidates.add(r * size + c);
+        }
+      }
+    }
+    return candidates.isEmpty() ? -1 : candidates.get(random.nextInt(candidates.size()));
+  }
+}
@@ -0,0 +1,50 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building and solving the tour model of {@link TravellingSalesman}, on the first cities of GR17, where 17 is
+ * the whole of it.
+ * <p>
+ * - build: a new model, with its variables and constraints, but no solving
+ * - solve: a new model, searched until the shortest tour is proven
+ */
+@State(Scope.Benchmark)
+public class TravellingSalesmanBenchmark {
+
+  @Param({"8", "12", "17"})
+  public int cities;
+
+  private int[][] distances;
+
+  @Setup
+  public void setUp() {
+    distances = new int[cities][cities];
+    for (int from = 0; from != cities; from++) {
+      System.arraycopy(TravellingSalesman.GR17[from], 0, distances[from], 0, cities);
+    }
+  }
+
+  @Benchmark
+  public Model build() {
+    Model model = new Model("TSP");
+    TravellingSalesman.buildModel(model, distances);
+    return model;
+  }
+
+  @Benchmark
+  public long solve() {
+    Model model = build();
+    Solver solver = model.getSolver();
+    while (solver.solve()) {
+      // keep going until the shortest tour is proven
+    }
+    return solver.getSolutionCount();
+  }
+}
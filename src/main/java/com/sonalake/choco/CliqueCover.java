@@ -0,0 +1,124 @@
+package com.sonalake.choco;
+
+import org.jgrapht.Graph;
+import org.jgrapht.alg.clique.DegeneracyBronKerboschCliqueFinder;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Covers the edges of a graph with cliques, so that each clique can have one allDifferent rather than one for
+ * each of its edges.
+ * <p>
+ * The maximal cliques are found by jgrapht's Bron-Kerbosch, which is quick on the sparse graphs we usually
+ * colour, but can find a huge number of them on a dense one, so it's given a time limit and we use what it found
+ * by then. They're then taken greedily, biggest first, and a clique is only used if it covers enough edges that
+ * no bigger one already has; so there can still be some overlap between the cliques, but never a clique that's
+ * there for the sake of one or two edges. Whatever edges are left over are kept as they are.
+ */
+final class CliqueCover {
+
+  // the smallest clique worth an allDifferent of its own, since an edge is a clique of 2
+  private static final int MIN_CLIQUE = 3;
+
+  private final List<int[]> cliques;
+  private final List<int[]> edges;
+
+  private CliqueCover(List<int[]> cliques, List<int[]> edges) {
+    this.cliques = cliques;
+    this.edges = edges;
+  }
+
+
+  /**
+   * Cover a graph with cliques
+   *
+   * @param graph        the graph, with its vertices numbered from 0
+   * @param searchMillis how long to spend looking for cliques
+   * @return the cover
+   */
+  static CliqueCover of(Graph<Integer, DefaultEdge> graph, long searchMillis) {
+    List<Set<Integer>> maximal = new ArrayList<>();
+    Iterator<Set<Integer>> found = new DegeneracyBronKerboschCliqueFinder<>(graph, searchMillis,
+      TimeUnit.MILLISECONDS).iterator();
+    while (found.hasNext()) {
+      Set<Integer> clique = found.next();
+      if (clique.size() >= MIN_CLIQUE) {
+        maximal.add(clique);
+      }
+    }
+    // the biggest first, as they cover the most edges with one constraint
+    maximal.sort(Comparator.comparingInt((Set<Integer> clique) -> clique.size()).reversed());
+
+    Set<DefaultEdge> covered = new HashSet<>();
+    List<int[]> cliques = new ArrayList<>();
+    for (Set<Integer> clique : maximal) {
+      Integer[] vertices = clique.toArray(new Integer[0]);
+      List<DefaultEdge> uncovered = new ArrayList<>();
+      for (int i = 0; i != vertices.length; i++) {
+        for (int j = i + 1; j != vertices.length; j++) {
+          DefaultEdge edge = graph.getEdge(vertices[i], vertices[j]);
+          if (!covered.contains(edge)) {
+            uncovered.add(edge);
+          }
+        }
+      }
+      // worth it if it does more than a clique one smaller than it would
+      if (uncovered.size() >= vertices.length - 1) {
+        covered.addAll(uncovered);
+        int[] members = new int[vertices.length];
+        for (int i = 0; i != members.length; i++) {
+          members[i] = vertices[i];
+        }
+        cliques.add(members);
+      }
+    }
+
+    List<int[]> edges = new ArrayList<>();
+    for (DefaultEdge edge : graph.edgeSet()) {
+      if (!covered.contains(edge)) {
+        edges.add(new int[]{graph.getEdgeSource(edge), graph.getEdgeTarget(edge)});
+      }
+    }
+    return new CliqueCover(Collections.unmodifiableList(cliques), Collections.unmodifiableList(edges));
+  }
+
+
+  /**
+   * Find a maximum clique, or if the search runs out of time, the biggest clique it found by then
+   *
+   * @param graph        the graph, with its vertices numbered from 0
+   * @param searchMillis how long to spend looking
+   * @return the clique's vertices, in order
+   */
+  static int[] largest(Graph<Integer, DefaultEdge> graph, long searchMillis) {
+    Iterator<Set<Integer>> found = new DegeneracyBronKerboschCliqueFinder<>(graph, searchMillis,
+      TimeUnit.MILLISECONDS).maximumIterator();
+    if (!found.hasNext()) {
+      return new int[0];
+    }
+    return found.next().stream().mapToInt(Integer::intValue).sorted().toArray();
+  }
+
+
+  /**
+   * @return the cliques, each as its vertices
+   */
+  List<int[]> cliques() {
+    return cliques;
+  }
+
+  /**
+   * @return the edges that aren't in any of the cliques, each as its two vertices
+   */
+  List<int[]> edges() {
+    return edges;
+  }
+}
@@ -0,0 +1,147 @@
+package com.sonalake.choco;
+
+/**
+ * How a {@link GraphColouring} model is built. A config never changes once it's made, so the same one can be
+ * shared between threads; use the {@code with...} methods to get a copy with a different setting.
+ */
+final class ColouringConfig {
+
+  /**
+   * How we stop the vertices at each end of an edge having the same colour
+   */
+  enum Edges {
+    // an allDifferent for every edge, as the sample always did
+    PAIRWISE,
+    // an allDifferent for each clique of a clique cover, and a not-equals for each edge no clique covers. A
+    // clique of k vertices can't have more than k colours used up between them, which k(k-1)/2 separate edges
+    // never see
+    CLIQUES
+  }
+
+  /**
+   * How we stop the search going over colourings that are the same but for which colour is called what
+   */
+  enum Symmetry {
+    // not at all, so proving a colouring of k colours is the best means seeing off all k! versions of each one
+    // that could be better
+    NONE,
+    // the vertices of a maximum clique all need different colours, so give them the first ones, in order
+    CLIQUE,
+    // taking the vertices with the maximum clique first, a colour can't be used until the one before it has been,
+    // which gives the clique the first colours as well, and leaves just one way of naming the colours
+    PRECEDENCE
+  }
+
+  /**
+   * How we count the colours that are used, which is what's minimised
+   */
+  enum Objective {
+    // a count for each colour from a globalCardinality, a 0/1 for each from a min with 1, and their sum, as the
+    // sample always did
+    CARDINALITY,
+    // an atMostNValues over the vertex colours, with the limit on each colour's usage kept as bounds on the
+    // counts of a globalCardinality, or left out if it can't be reached
+    AT_MOST_NVALUES
+  }
+
+  static final ColouringConfig DEFAULT = new ColouringConfig(Edges.PAIRWISE, true, true, Symmetry.NONE,
+    Objective.CARDINALITY);
+
+  private final Edges edges;
+  private final boolean heuristicBound;
+  private final boolean lowerBound;
+  private final Symmetry symmetry;
+  private final Objective objective;
+
+  private ColouringConfig(Edges edges, boolean heuristicBound, boolean lowerBound, Symmetry symmetry,
+                          Objective objective) {
+    this.edges = edges;
+    this.heuristicBound = heuristicBound;
+    this.lowerBound = lowerBound;
+    this.symmetry = symmetry;
+    this.objective = objective;
+  }
+
+  /**
+   * @return how the edges are constrained
+   */
+  Edges edges() {
+    return edges;
+  }
+
+  /**
+   * @param edges how the edges should be constrained
+   * @return a copy of this config, with the edges constrained the given way
+   */
+  ColouringConfig withEdges(Edges edges) {
+    return new ColouringConfig(edges, heuristicBound, lowerBound, symmetry, objective);
+  }
+
+  /**
+   * @return true if a {@link HeuristicColouring} is found first, to bound the number of colours and to start the
+   * search from
+   */
+  boolean heuristicBound() {
+    return heuristicBound;
+  }
+
+  /**
+   * @param heuristicBound true to bound the colours by a heuristic colouring, false to allow one per vertex
+   * @return a copy of this config, with the heuristic bound turned on or off
+   */
+  ColouringConfig withHeuristicBound(boolean heuristicBound) {
+    return new ColouringConfig(edges, heuristicBound, lowerBound, symmetry, objective);
+  }
+
+  /**
+   * @return true if the number of colours is bounded from below, by the biggest clique we can find and by how
+   * many colours it takes to keep to the limit on each one's usage
+   */
+  boolean lowerBound() {
+    return lowerBound;
+  }
+
+  /**
+   * @param lowerBound true to bound the colours from below, false to leave the search to prove it
+   * @return a copy of this config, with the lower bound turned on or off
+   */
+  ColouringConfig withLowerBound(boolean lowerBound) {
+    return new ColouringConfig(edges, heuristicBound, lowerBound, symmetry, objective);
+  }
+
+  /**
+   * @return how the symmetry between the colours is broken
+   */
+  Symmetry symmetry() {
+    return symmetry;
+  }
+
+  /**
+   * @param symmetry how the symmetry between the colours should be broken
+   * @return a copy of this config, with the symmetry broken the given way
+   */
+  ColouringConfig withSymmetry(Symmetry symmetry) {
+    return new ColouringConfig(edges, heuristicBound, lowerBound, symmetry, objective);
+  }
+
+  /**
+   * @return how the colours that are used are counted
+   */
+  Objective objective() {
+    return objective;
+  }
+
+  /**
+   * @param objective how the colours that are used should be counted
+   * @return a copy of this config, with the colours counted the given way
+   */
+  ColouringConfig withObjective(Objective objective) {
+    return new ColouringConfig(edges, heuristicBound, lowerBound, symmetry, objective);
+  }
+
+  @Override
+  public String toString() {
+    return "edges=" + edges + ", heuristicBound=" + heuristicBound + ", lowerBound=" + lowerBound
+      + ", symmetry=" + symmetry + ", objective=" + objective;
+  }
+}
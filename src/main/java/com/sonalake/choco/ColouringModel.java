@@ -0,0 +1,94 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.function.Consumer;
+
+/**
+ * A colouring model, as built by {@link GraphColouring}, with the variables we need to read a
+ * {@link ColouringSolution} out of it. The variables are kept as they were built, so reading a solution doesn't
+ * have to look anything up in the model by name.
+ */
+final class ColouringModel {
+
+  private final Model model;
+  private final IntVar[] vertexColours;
+  private final IntVar[] colourUsage;
+  private final IntVar colourCount;
+  private final int lowerBound;
+
+  /**
+   * @param model         the underlying model
+   * @param vertexColours the colour of each vertex
+   * @param colourUsage   how many vertices have each colour, by colour, or null if the model doesn't count them
+   * @param colourCount   how many different colours are used, which is the objective
+   * @param lowerBound    the fewest colours any colouring can have, as far as we know
+   */
+  ColouringModel(Model model, IntVar[] vertexColours, IntVar[] colourUsage, IntVar colourCount, int lowerBound) {
+    this.model = model;
+    this.vertexColours = vertexColours;
+    this.colourUsage = colourUsage;
+    this.colourCount = colourCount;
+    this.lowerBound = lowerBound;
+  }
+
+  /**
+   * @return the underlying model
+   */
+  Model model() {
+    return model;
+  }
+
+  /**
+   * @return the colour of each vertex
+   */
+  IntVar[] vertexColours() {
+    return vertexColours;
+  }
+
+  /**
+   * @return the fewest colours any colouring can have, as far as we know, so a solution with this many is the
+   * best there is
+   */
+  int lowerBound() {
+    return lowerBound;
+  }
+
+  /**
+   * Read the solution the search is at. This is only meaningful when it's just found one, such as after
+   * {@link org.chocosolver.solver.Solver#solve()} returns true, or in a listener.
+   *
+   * @return the solution
+   */
+  ColouringSolution solution() {
+    int[] colours = new int[vertexColours.length];
+    for (int vertex = 0; vertex != colours.length; vertex++) {
+      colours[vertex] = vertexColours[vertex].getValue();
+    }
+    int[] usage;
+    if (colourUsage != null) {
+      usage = new int[colourUsage.length];
+      for (int colour = 0; colour != usage.length; colour++) {
+        usage[colour] = colourUsage[colour].getValue();
+      }
+    } else {
+      // count them ourselves, which is no more work than reading them
+      usage = new int[HeuristicColouring.colourCount(colours) + 1];
+      for (int colour : colours) {
+        usage[colour]++;
+      }
+    }
+    return new ColouringSolution(colours, usage, colourCount.getValue());
+  }
+
+  /**
+   * Tell a listener about each solution the search finds, which for an optimisation is each better one
+   *
+   * @param listener the listener, called on the thread that's searching
+   */
+  void onSolution(Consumer<ColouringSolution> listener) {
+    model.getSolver().plugMonitor((IMonitorSolution) () -> listener.accept(solution()));
+  }
+}
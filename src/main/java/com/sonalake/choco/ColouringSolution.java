@@ -0,0 +1,70 @@
+package com.sonalake.choco;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * A colouring found by the search: the colour of each vertex, and how many vertices have each colour. It's read
+ * straight from the model's variables into int arrays, so it stays as it was when the search moves on, and
+ * getting one doesn't cost more than copying the values.
+ */
+final class ColouringSolution {
+
+  private final int[] colours;
+  private final int[] usage;
+  private final int colourCount;
+
+  /**
+   * @param colours     the colour of each vertex, from 1
+   * @param usage       how many vertices have each colour, by colour
+   * @param colourCount how many different colours are used
+   */
+  ColouringSolution(int[] colours, int[] usage, int colourCount) {
+    this.colours = colours;
+    this.usage = usage;
+    this.colourCount = colourCount;
+  }
+
+  /**
+   * @param vertex the vertex, numbered from 0
+   * @return its colour, from 1
+   */
+  int colour(int vertex) {
+    return colours[vertex];
+  }
+
+  /**
+   * @return the colour of each vertex, from 1
+   */
+  int[] colours() {
+    return colours.clone();
+  }
+
+  /**
+   * @param colour the colour
+   * @return how many vertices have it
+   */
+  int usage(int colour) {
+    return colour < usage.length ? usage[colour] : 0;
+  }
+
+  /**
+   * @return how many different colours are used
+   */
+  int colourCount() {
+    return colourCount;
+  }
+
+  /**
+   * @return how many vertices there are
+   */
+  int vertexCount() {
+    return colours.length;
+  }
+
+  @Override
+  public String toString() {
+    return format("%s colours: %s", colourCount, Arrays.toString(colours));
+  }
+}
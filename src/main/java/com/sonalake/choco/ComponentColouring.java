@@ -0,0 +1,218 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.jgrapht.Graph;
+import org.jgrapht.alg.connectivity.ConnectivityInspector;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.SimpleGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Colours a graph one connected component at a time. Nothing joins the vertices of different components, so each
+ * can have a model of its own, which is much smaller than one for the whole graph, and they can all be solved at
+ * the same time on a {@link ForkJoinPool}.
+ * <p>
+ * The colourings are then put together, and this is where the limit on how often a colour can be used comes in,
+ * since it's a limit over the whole graph, not each component:
+ * <p>
+ * - we aim for as many colours as the component that needs the most, or as many as it takes to fit all the
+ * vertices in, if that's more
+ * - each component's colour classes are given one of those colours, biggest class first, and never two classes of
+ * the same component the same colour
+ * - if none of them has room, the class gets the lowest colour past them that does
+ * - the components are taken biggest first, so the small ones fill in the gaps the big ones leave
+ * <p>
+ * This is done twice, and we keep whichever needs fewer colours: once giving each class the colour with the fewest
+ * vertices so far, so they all fill up evenly, which is best when the components need about as many colours as
+ * we're aiming for; and once giving it the colour with the most that it still fits in, which packs the colours
+ * tighter when the limit is small.
+ * <p>
+ * If the limit doesn't come into it, this needs as many colours as the component that needs the most, which is the
+ * chromatic number of the graph when each component is solved to the end. If it does, there may be more.
+ */
+final class ComponentColouring {
+
+  private ComponentColouring() {
+  }
+
+
+  /**
+   * Colour a graph, solving each connected component in parallel
+   *
+   * @param graph             the graph, with its vertices numbered from 0
+   * @param maxUsagePerColour the most vertices that can have the same colour
+   * @param config            how each component's model is built
+   * @param limitMillis       how long each component's search can take, or 0 for as long as it needs
+   * @param pool              where the components are solved
+   * @return the colouring
+   */
+  static ColouringSolution solve(Graph<Integer, DefaultEdge> graph, int maxUsagePerColour, ColouringConfig config,
+                                 long limitMillis, ForkJoinPool pool) {
+    List<Set<Integer>> components = new ConnectivityInspector<>(graph).connectedSets();
+    // the biggest first, so they're started first, and placed first when the colourings are put together
+    components.sort(Comparator.comparingInt((Set<Integer> component) -> component.size()).reversed());
+
+    List<int[]> members = new ArrayList<>();
+    List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+    for (Set<Integer> component : components) {
+      int[] vertices = component.stream().mapToInt(Integer::intValue).sorted().toArray();
+      members.add(vertices);
+      tasks.add(pool.submit(() -> colour(graph, vertices, maxUsagePerColour, config, limitMillis)));
+    }
+
+    List<int[]> colourings = new ArrayList<>();
+    int mostColours = 0;
+    for (ForkJoinTask<int[]> task : tasks) {
+      int[] local = task.join();
+      colourings.add(local);
+      // the colours it uses needn't be the lowest ones, so count them rather than take the highest
+      mostColours = Math.max(mostColours, (int) Arrays.stream(local).distinct().count());
+    }
+
+    // we can't do better than the component that needs the most colours, or than filling each colour up to the
+    // limit, so try to fit everything into that many
+    int vertexCount = graph.vertexSet().size();
+    int target = Math.max(mostColours, (vertexCount + maxUsagePerColour - 1) / maxUsagePerColour);
+    ColouringSolution evenly = merge(vertexCount, members, colourings, maxUsagePerColour, target, true);
+    ColouringSolution tightly = merge(vertexCount, members, colourings, maxUsagePerColour, target, false);
+    return tightly.colourCount() < evenly.colourCount() ? tightly : evenly;
+  }
+
+
+  /**
+   * Put the colourings of the components together into one for the whole graph
+   *
+   * @param vertexCount       how many vertices the whole graph has
+   * @param members           the vertices of each component
+   * @param colourings        the colour of each vertex of each component, from 1
+   * @param maxUsagePerColour the most vertices that can have the same colour
+   * @param target            how many colours we're trying to fit into
+   * @param evenly            true to give each colour class the emptiest colour it fits in, false the fullest
+   * @return the colouring
+   */
+  static ColouringSolution merge(int vertexCount, List<int[]> members, List<int[]> colourings,
+                                 int maxUsagePerColour, int target, boolean evenly) {
+    int[] colours = new int[vertexCount];
+    // one more than needed, as colours are numbered from 1
+    int[] usage = new int[vertexCount + 1];
+    for (int i = 0; i != colourings.size(); i++) {
+      int[] vertices = members.get(i);
+      int[] local = colourings.get(i);
+      int[] global = placeClasses(local, usage, maxUsagePerColour, target, evenly);
+      for (int v = 0; v != vertices.length; v++) {
+        colours[vertices[v]] = global[local[v]];
+      }
+    }
+    int colourCount = 0;
+    for (int used : usage) {
+      colourCount += used > 0 ? 1 : 0;
+    }
+    return new ColouringSolution(colours, usage, colourCount);
+  }
+
+
+  /**
+   * Find the best colouring of one component that we can, in the time we have
+   *
+   * @return the colour of each vertex of the component, from 1, in the same order as the vertices
+   */
+  private static int[] colour(Graph<Integer, DefaultEdge> graph, int[] vertices, int maxUsagePerColour,
+                              ColouringConfig config, long limitMillis) {
+    if (vertices.length == 1) {
+      // nothing to decide, and not worth a model
+      return new int[]{1};
+    }
+    Graph<Integer, DefaultEdge> component = subgraph(graph, vertices);
+
+    Model model = new Model("colouring");
+    ColouringModel colouring = GraphColouring.buildModel(model, component, maxUsagePerColour, config);
+    Solver solver = model.getSolver();
+    if (limitMillis > 0) {
+      solver.limitTime(limitMillis);
+    }
+    int[] best = null;
+    while (solver.solve()) {
+      best = colouring.solution().colours();
+    }
+    // the time ran out before the search found anything, so fall back on a quick colouring
+    return best != null ? best : HeuristicColouring.best(component, maxUsagePerColour);
+  }
+
+
+  /**
+   * Give each colour class of a component a colour of the whole graph
+   *
+   * @param local             the colour of each vertex of the component, from 1
+   * @param usage             how many vertices have each colour of the whole graph so far, which is updated
+   * @param maxUsagePerColour the most vertices that can have the same colour
+   * @param target            how many colours we're trying to fit into
+   * @param evenly            true to give each class the emptiest colour it fits in, false the fullest
+   * @return the colour of the whole graph for each colour of the component
+   */
+  static int[] placeClasses(int[] local, int[] usage, int maxUsagePerColour, int target, boolean evenly) {
+    int[] sizes = new int[HeuristicColouring.colourCount(local) + 1];
+    for (int colour : local) {
+      sizes[colour]++;
+    }
+    List<Integer> classes = new ArrayList<>();
+    for (int colour = 1; colour != sizes.length; colour++) {
+      if (sizes[colour] > 0) {
+        classes.add(colour);
+      }
+    }
+    classes.sort(Comparator.comparingInt((Integer colour) -> -sizes[colour]).thenComparingInt(colour -> colour));
+
+    int[] global = new int[sizes.length];
+    boolean[] taken = new boolean[usage.length];
+    for (int colour : classes) {
+      int size = sizes[colour];
+      int chosen = 0;
+      for (int candidate = 1; candidate <= target; candidate++) {
+        if (!taken[candidate] && usage[candidate] + size <= maxUsagePerColour
+          && (chosen == 0 || (evenly ? usage[candidate] < usage[chosen] : usage[candidate] > usage[chosen]))) {
+          chosen = candidate;
+        }
+      }
+      if (chosen == 0) {
+        // there's always room somewhere, as there's a colour for every vertex
+        chosen = target + 1;
+        while (taken[chosen] || usage[chosen] + size > maxUsagePerColour) {
+          chosen++;
+        }
+      }
+      global[colour] = chosen;
+      taken[chosen] = true;
+      usage[chosen] += size;
+    }
+    return global;
+  }
+
+
+  /**
+   * @return the part of the graph with just these vertices, numbered from 0 in the order they're given
+   */
+  private static Graph<Integer, DefaultEdge> subgraph(Graph<Integer, DefaultEdge> graph, int[] vertices) {
+    Graph<Integer, DefaultEdge> component = new SimpleGraph<>(DefaultEdge.class);
+    for (int v = 0; v != vertices.length; v++) {
+      component.addVertex(v);
+    }
+    for (int v = 0; v != vertices.length; v++) {
+      for (DefaultEdge edge : graph.edgesOf(vertices[v])) {
+        int other = graph.getEdgeSource(edge) == vertices[v] ? graph.getEdgeTarget(edge) : graph.getEdgeSource(edge);
+        int u = Arrays.binarySearch(vertices, other);
+        if (u > v) {
+          component.addEdge(v, u);
+        }
+      }
+    }
+    return component;
+  }
+}
@@ -1,74 +1,317 @@
 package com.sonalake.choco;
 
 import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solution;
 import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.selectors.values.IntDomainLast;
+import org.chocosolver.solver.search.strategy.selectors.values.IntDomainMin;
+import org.chocosolver.solver.search.strategy.selectors.variables.DomOverWDeg;
 import org.chocosolver.solver.variables.IntVar;
-import org.chocosolver.solver.variables.Variable;
-
+import org.jgrapht.Graph;
+import org.jgrapht.alg.connectivity.ConnectivityInspector;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.SimpleGraph;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
 
-import static java.util.Arrays.stream;
+import static java.lang.String.format;
 
 /**
  * This is more complex than the sudoku approach, because:
  * - It's a more generic solution for all graphs
  * - It assumes
  * and also assumes we wantto use the least number of colours to fill in this graph, without over using colours.
+ * <p>
+ * Usage: {@code GraphColouring [options] [graph file] [max usage per colour]}, by default the Petersen graph and 3.
+ * The file can be DIMACS, DOT, GraphML or an edge list, as read by {@link GraphReader}. The options are:
+ * <p>
+ * - {@code --cliques}: post an allDifferent for each clique of a {@link CliqueCover}, rather than one per edge
+ * - {@code --no-bound}: allow as many colours as there are vertices, rather than as many as a
+ * {@link HeuristicColouring} needs
+ * - {@code --no-lower-bound}: don't bound the number of colours from below by a clique and the usage limit
+ * - {@code --nvalues}: count the colours used with an atMostNValues, rather than a bitset over a globalCardinality
+ * - {@code --symmetry=clique|precedence}: break the symmetry between the colours, as in
+ * {@link ColouringConfig.Symmetry}
+ * - {@code --whole}: solve the graph as one model, even if it's in more than one connected component; otherwise
+ * each component is solved on its own, in parallel, by {@link ComponentColouring}
  */
 public class GraphColouring {
 
-  static public void main(String... args) {
+  // how long we look for cliques to cover the edges with
+  private static final long CLIQUE_SEARCH_MILLIS = 1000;
+
+  static public void main(String... args) throws IOException {
+
+    ColouringConfig config = ColouringConfig.DEFAULT;
+    boolean whole = false;
+    List<String> positional = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.equals("--whole")) {
+        whole = true;
+      } else if (arg.equals("--cliques")) {
+        config = config.withEdges(ColouringConfig.Edges.CLIQUES);
+      } else if (arg.equals("--no-bound")) {
+        config = config.withHeuristicBound(false);
+      } else if (arg.equals("--nvalues")) {
+        config = config.withObjective(ColouringConfig.Objective.AT_MOST_NVALUES);
+      } else if (arg.equals("--no-lower-bound")) {
+        config = config.withLowerBound(false);
+      } else if (arg.startsWith("--symmetry=")) {
+        config = config.withSymmetry(
+          ColouringConfig.Symmetry.valueOf(arg.substring("--symmetry=".length()).toUpperCase()));
+      } else {
+        positional.add(arg);
+      }
+    }
+
+    // the graph from the file, or if there isn't one, the Petersen graph: an outer pentagon, an inner pentagram,
+    // and a spoke between each of their vertices
+    Graph<Integer, DefaultEdge> graph = positional.size() > 0 ? GraphReader.read(Paths.get(positional.get(0)))
+      : petersen(5);
+    int maxUsagePerColour = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 3;
+    System.out.println(format("Colouring %s vertices and %s edges, with %s", graph.vertexSet().size(),
+      graph.edgeSet().size(), config));
+
+    // if there's more than one piece to the graph, there's no need for them to share a model
+    if (!whole && !new ConnectivityInspector<>(graph).isConnected()) {
+      long start = System.nanoTime();
+      ColouringSolution solution = ComponentColouring.solve(graph, maxUsagePerColour, config, 0,
+        ForkJoinPool.commonPool());
+      System.out.println(format("Solved each component on its own in %.1fms",
+        (System.nanoTime() - start) / 1e6));
+      describeSolution(solution);
+      return;
+    }
 
     // Build our model
     Model model = new Model("colouring");
 
-    // count the vertices
-    int vertexCount = 10;
+    // set up the constraints so we won't colour adjacent vertices the same, using the least number of colours
+    ColouringModel colouring = buildModel(model, graph, maxUsagePerColour, config);
+
+    // solve it
+    Solver solver = model.getSolver();
+    solver.showShortStatistics();
+    colouring.onSolution(solution -> {
+      System.out.println(solver.getSolutionCount() + " solutions found");
+      describeSolution(solution);
+    });
+
 
-    // start with as many colours as vertices, and then try to bring this down
-    int colourCount = vertexCount;
+    // do this until we give up, the last result we get will be the best the solver can find, but may be
+    // no better than the first. The listener has already described each one, and if one gets down to the lower
+    // bound there can't be a better one, so there's no need to even ask
+    while (solver.solve()) {
+      if (colouring.solution().colourCount() <= colouring.lowerBound()) {
+        System.out.println(format("%s colours is the lower bound, so that's the best there is",
+          colouring.lowerBound()));
+        break;
+      }
+    }
+
+    if (solver.getSolutionCount() == 0) {
+      System.out.println("No solutions found");
+    }
+
+  }
+
+
+  /**
+   * Build the colouring model for a graph, with the default config
+   *
+   * @param model             the underlying model
+   * @param graph             the graph, with its vertices numbered from 0
+   * @param maxUsagePerColour what is the maximum number of times a colour can be used
+   * @return the model, and its variables
+   */
+  static ColouringModel buildModel(Model model, Graph<Integer, DefaultEdge> graph, int maxUsagePerColour) {
+    return buildModel(model, graph, maxUsagePerColour, ColouringConfig.DEFAULT);
+  }
+
+  /**
+   * Build the colouring model for a graph
+   *
+   * @param model             the underlying model
+   * @param graph             the graph, with its vertices numbered from 0
+   * @param maxUsagePerColour what is the maximum number of times a colour can be used
+   * @param config            how the model is built
+   * @return the model, and its variables
+   */
+  static ColouringModel buildModel(Model model, Graph<Integer, DefaultEdge> graph, int maxUsagePerColour,
+                                   ColouringConfig config) {
+    int vertexCount = graph.vertexSet().size();
+
+    // start with as many colours as vertices, and then try to bring this down. If we have a quick colouring
+    // then we never need more colours than it has, so we start with those instead. Colour 0 is never used, so
+    // there's always one more colour option than there are colours
+    int[] heuristic = config.heuristicBound() ? HeuristicColouring.best(graph, maxUsagePerColour) : null;
+    int colourCount = heuristic == null ? vertexCount : HeuristicColouring.colourCount(heuristic) + 1;
 
     // this array holds the actual colour of each vertex
-    // colours run from 1 - 9 (both ends are INCLUSIVE)
+    // colours run from 1 - (colourCount - 1) (both ends are INCLUSIVE)
     IntVar[] vertexColours = model.intVarArray("vertexColours", vertexCount, 1, colourCount - 1);
 
-
     // set up the constraints so we won't try to colour in adjacent vertices with the same colour
-    constrainEdges(model, vertexColours, 0, 1, 5);
-    constrainEdges(model, vertexColours, 1, 2, 6);
-    constrainEdges(model, vertexColours, 2, 3, 7);
-    constrainEdges(model, vertexColours, 3, 4, 8);
-    constrainEdges(model, vertexColours, 4, 0, 9);
-
-    constrainEdges(model, vertexColours, 5, 7, 8);
-    constrainEdges(model, vertexColours, 6, 8, 9);
-    constrainEdges(model, vertexColours, 7, 9, 5);
-    constrainEdges(model, vertexColours, 8, 5, 6);
-    constrainEdges(model, vertexColours, 9, 6, 7);
+    if (config.edges() == ColouringConfig.Edges.CLIQUES) {
+      constrainCliques(model, vertexColours, CliqueCover.of(graph, CLIQUE_SEARCH_MILLIS));
+    } else {
+      for (DefaultEdge edge : graph.edgeSet()) {
+        constrainEdges(model, vertexColours, graph.getEdgeSource(edge), graph.getEdgeTarget(edge));
+      }
+    }
+
+    // the colours are all alike, so we can say which ones certain vertices get without losing anything, as long
+    // as the colouring we start from is renamed to match
+    int[] clique = config.symmetry() != ColouringConfig.Symmetry.NONE || config.lowerBound()
+      ? CliqueCover.largest(graph, CLIQUE_SEARCH_MILLIS) : new int[0];
+    if (config.symmetry() != ColouringConfig.Symmetry.NONE) {
+      int[] order = cliqueFirst(clique, vertexCount);
+      breakSymmetry(model, vertexColours, clique, order, colourCount, config.symmetry());
+      if (heuristic != null) {
+        heuristic = renameByFirstUse(heuristic, order);
+      }
+    }
 
     // set up the constraints so we try to use the least number of colours
-    minimiseColourUsage(model, colourCount, vertexColours, 3);
+    IntVar[] colourUsage = config.objective() == ColouringConfig.Objective.AT_MOST_NVALUES
+      ? minimiseDistinctColours(model, colourCount, vertexColours, maxUsagePerColour)
+      : minimiseColourUsage(model, colourCount, vertexColours, maxUsagePerColour);
+
+    IntVar uniqueColourCount = (IntVar) model.getObjective();
+
+    // we can't use fewer colours than there are vertices in a clique, or than it takes to colour every vertex
+    // without going over the limit, so there's no point searching for fewer, and once we've found that many
+    // we're done
+    int lowerBound = 1;
+    if (config.lowerBound()) {
+      lowerBound = Math.max(clique.length, (vertexCount + maxUsagePerColour - 1) / maxUsagePerColour);
+      model.arithm(uniqueColourCount, ">=", lowerBound).post();
+    }
 
-    // solve it
-    Solver solver = model.getSolver();
-    solver.showShortStatistics();
+    if (heuristic != null) {
+      startFrom(model, vertexColours, heuristic);
+    }
+    return new ColouringModel(model, vertexColours, colourUsage, uniqueColourCount, lowerBound);
+  }
 
 
-    // do this until we give up, the last result we get will be the best the solver can find, but may be
-    // no better than the first
-    while (solver.solve()) {
-      System.out.println(solver.getSolutionCount() + " solutions found");
-      describeSolution(model);
+  /**
+   * Break the symmetry between the colours
+   * <p>
+   * - for {@link ColouringConfig.Symmetry#CLIQUE} the clique's vertices get colours 1, 2, 3... in order
+   * - for {@link ColouringConfig.Symmetry#PRECEDENCE}, going through the vertices in order, each colour has to
+   * come up before the one after it can; as the clique comes first, it gets the same colours as above
+   *
+   * @param model         the underlying model
+   * @param vertexColours the vertex colours
+   * @param clique        a maximum clique, or as near one as we found
+   * @param order         the order of the vertices, the clique first
+   * @param colourCount   how many colour options there are, counting colour 0
+   * @param symmetry      how to break the symmetry
+   */
+  private static void breakSymmetry(Model model, IntVar[] vertexColours, int[] clique, int[] order,
+                                    int colourCount, ColouringConfig.Symmetry symmetry) {
+    if (symmetry == ColouringConfig.Symmetry.CLIQUE) {
+      for (int i = 0; i != clique.length; i++) {
+        model.arithm(vertexColours[clique[i]], "=", i + 1).post();
+      }
+    } else {
+      IntVar[] ordered = new IntVar[order.length];
+      for (int i = 0; i != order.length; i++) {
+        ordered[i] = vertexColours[order[i]];
+      }
+      model.intValuePrecedeChain(ordered, IntStream.range(1, colourCount).toArray()).post();
     }
+  }
 
-    if (solver.getSolutionCount() == 0) {
-      System.out.println("No solutions found");
+  /**
+   * @return the vertices, with the clique's first, then the rest in order
+   */
+  private static int[] cliqueFirst(int[] clique, int vertexCount) {
+    int[] order = new int[vertexCount];
+    boolean[] inClique = new boolean[vertexCount];
+    int next = 0;
+    for (int vertex : clique) {
+      order[next++] = vertex;
+      inClique[vertex] = true;
+    }
+    for (int vertex = 0; vertex != vertexCount; vertex++) {
+      if (!inClique[vertex]) {
+        order[next++] = vertex;
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Rename the colours of a colouring, so that going through the vertices in order, they come up as 1, 2, 3...
+   * The colours are only renamed, so it's still a colouring, with the same number of vertices of each colour
+   *
+   * @param colours the colour of each vertex, from 1
+   * @param order   the order of the vertices
+   * @return the renamed colouring
+   */
+  private static int[] renameByFirstUse(int[] colours, int[] order) {
+    int[] names = new int[HeuristicColouring.colourCount(colours) + 1];
+    int next = 1;
+    int[] renamed = new int[colours.length];
+    for (int vertex : order) {
+      if (names[colours[vertex]] == 0) {
+        names[colours[vertex]] = next++;
+      }
+      renamed[vertex] = names[colours[vertex]];
+    }
+    return renamed;
+  }
+
+
+  /**
+   * Search from a colouring we already have: each vertex is tried with its colour in that colouring first, so the
+   * first solution is found without backtracking, and from then on the search only looks for better ones
+   *
+   * @param model         the underlying model
+   * @param vertexColours the vertex colours
+   * @param colours       the colour of each vertex to try first
+   */
+  private static void startFrom(Model model, IntVar[] vertexColours, int[] colours) {
+    Solution hint = new Solution(model, vertexColours);
+    for (int vertex = 0; vertex != colours.length; vertex++) {
+      hint.setIntVal(vertexColours[vertex], colours[vertex]);
     }
+    // the colours of the vertices decide everything else, so they're all we need to search on; but an
+    // atMostNValues only bounds the colour count from below, so it's then given the least value it can have
+    model.getSolver().setSearch(Search.lastConflict(new DomOverWDeg(vertexColours, 0,
+      new IntDomainLast(hint, new IntDomainMin(), null))), Search.inputOrderLBSearch((IntVar) model.getObjective()));
+  }
 
+
+  /**
+   * Build a generalised Petersen graph, which for 5 is the Petersen graph itself: an outer polygon of n
+   * vertices, an inner star of n vertices each joined to the ones two steps away, and a spoke joining each outer
+   * vertex to its inner one.
+   *
+   * @param n the number of vertices in the outer polygon, so there are 2n vertices in all
+   * @return the graph
+   */
+  static Graph<Integer, DefaultEdge> petersen(int n) {
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    for (int vertex = 0; vertex != 2 * n; vertex++) {
+      graph.addVertex(vertex);
+    }
+    for (int i = 0; i != n; i++) {
+      graph.addEdge(i, (i + 1) % n);
+      graph.addEdge(i, n + i);
+      // for small n the star's edges can come round twice, which the graph ignores
+      graph.addEdge(n + i, n + (i + 2) % n);
+    }
+    return graph;
   }
 
 
@@ -87,6 +330,28 @@ public class GraphColouring {
   }
 
 
+  /**
+   * Constrain each clique so its vertices are all different colours, and each edge that's not in one of them so
+   * its ends are different
+   *
+   * @param model         the underlying model
+   * @param vertexColours the vertex colours
+   * @param cover         the cliques, and the edges left over
+   */
+  private static void constrainCliques(Model model, IntVar[] vertexColours, CliqueCover cover) {
+    for (int[] clique : cover.cliques()) {
+      IntVar[] colours = new IntVar[clique.length];
+      for (int i = 0; i != colours.length; i++) {
+        colours[i] = vertexColours[clique[i]];
+      }
+      model.allDifferent(colours).post();
+    }
+    for (int[] edge : cover.edges()) {
+      model.arithm(vertexColours[edge[0]], "!=", vertexColours[edge[1]]).post();
+    }
+  }
+
+
   /**
    * Create all the constraints required to minimise the number of colours used. This means:
    * <p>
@@ -100,14 +365,16 @@ public class GraphColouring {
    * @param colourCount       how many colours are there
    * @param vertexColours     the actual colours for each node
    * @param maxUsagePerColour what is the maximum number of times a colour can be used
+   * @return how many times each colour is used
    */
-  private static void minimiseColourUsage(Model model, int colourCount, IntVar[] vertexColours, int maxUsagePerColour) {
+  private static IntVar[] minimiseColourUsage(Model model, int colourCount, IntVar[] vertexColours,
+                                              int maxUsagePerColour) {
     final int vertexCount = vertexColours.length;
     // this will hold how many time each colour was used
-    IntVar[] appliedColourCount = model.intVarArray("appliedColourCount", vertexCount, 0, vertexCount - 1);
+    IntVar[] appliedColourCount = model.intVarArray("appliedColourCount", colourCount, 0, vertexCount - 1);
 
     // this will count 1 for each colour used - we will use the globalCardinality to fill these in
-    IntVar[] appliedColoursBitSet = model.intVarArray("appliedColoursBitSet", vertexCount, 0, 1);
+    IntVar[] appliedColoursBitSet = model.intVarArray("appliedColoursBitSet", colourCount, 0, 1);
 
     // this is our list of colour options, the globalCardinality below requires this
     int[] options = IntStream.range(0, colourCount).toArray();
@@ -139,38 +406,59 @@ public class GraphColouring {
     IntVar uniqueColourCount = model.intVar("Unique colour count", 0, colourCount);
     model.sum(appliedColoursBitSet, "=", uniqueColourCount).post();
     model.setObjective(Model.MINIMIZE, uniqueColourCount);
-
-
+    return appliedColourCount;
   }
 
   /**
-   * Print out the solution that was found
+   * Count the colours used with an atMostNValues over the vertex colours, and minimise that. This needs none of
+   * the counting and bitset variables of {@link #minimiseColourUsage}, and so none of their constraints; the limit
+   * on how often a colour can be used is kept separately, as the upper bound of each count of a
+   * globalCardinality, and if it's at least the number of vertices it can't be broken, so there's nothing to keep.
+   * <p>
+   * As we're minimising, it's enough that the count can't be less than the colours used, which is all
+   * atMostNValues says. A full nValues would also keep it from being more, but its atLeastNValues half costs far
+   * more than it saves: on a random graph of 5000 vertices it took 900MB to build, rather than 150MB.
    *
-   * @param model
+   * @param model             the model
+   * @param colourCount       how many colours are there
+   * @param vertexColours     the actual colours for each node
+   * @param maxUsagePerColour what is the maximum number of times a colour can be used
+   * @return how many times each colour is used, or null if that isn't limited
    */
-  private static void describeSolution(Model model) {
-    Map<String, Integer> vertexColours = groupVarsByNamePrefix(model, "vertexColours", true);
-    Map<String, Integer> usedColours = groupVarsByNamePrefix(model, "appliedColourCount", false);
-
+  private static IntVar[] minimiseDistinctColours(Model model, int colourCount, IntVar[] vertexColours,
+                                                  int maxUsagePerColour) {
+    IntVar[] colourUsage = null;
+    if (maxUsagePerColour < vertexColours.length) {
+      colourUsage = model.intVarArray("colourUsage", colourCount, 0, maxUsagePerColour);
+      model.globalCardinality(vertexColours, IntStream.range(0, colourCount).toArray(), colourUsage, false).post();
+    }
 
-    System.out.println(String.format("\tusedColours (%s): %s ", usedColours.size(), usedColours));
-    System.out.println("\tVertices: " + vertexColours);
+    IntVar uniqueColourCount = model.intVar("Unique colour count", 0, colourCount);
+    model.atMostNValues(vertexColours, uniqueColourCount, false).post();
+    model.setObjective(Model.MINIMIZE, uniqueColourCount);
+    return colourUsage;
   }
 
   /**
-   * Get all the vars with a given prefix and put their int value into a map
+   * Print out the solution that was found
    *
-   * @param model       the model
-   * @param name the    name prefix
-   * @param retainZeros if false, then filter out any entry with a value of 0
-   * @return a map of the name -> int value of the given entries
+   * @param solution the solution
    */
-  private static Map<String, Integer> groupVarsByNamePrefix(Model model, String name, boolean retainZeros) {
-    return new TreeMap<>(stream(model.getVars())
-      .filter(v -> v.getName().startsWith(name))
-      .map(Variable::asIntVar)
-      .filter(f -> retainZeros || f.getValue() > 0)
-      .collect(Collectors.toMap(Variable::getName, IntVar::getValue)));
+  private static void describeSolution(ColouringSolution solution) {
+    StringBuilder usedColours = new StringBuilder();
+    for (int colour = 1; colour <= solution.vertexCount(); colour++) {
+      if (solution.usage(colour) > 0) {
+        usedColours.append(usedColours.length() == 0 ? "" : ", ").append(colour).append('=')
+          .append(solution.usage(colour));
+      }
+    }
+    StringBuilder vertices = new StringBuilder();
+    for (int vertex = 0; vertex != solution.vertexCount(); vertex++) {
+      vertices.append(vertex == 0 ? "" : ", ").append(vertex).append('=').append(solution.colour(vertex));
+    }
+
+    System.out.println(String.format("\tusedColours (%s): {%s} ", solution.colourCount(), usedColours));
+    System.out.println("\tVertices: {" + vertices + "}");
   }
 
 }
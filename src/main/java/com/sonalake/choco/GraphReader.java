@@ -0,0 +1,313 @@
+package com.sonalake.choco;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.Pseudograph;
+import org.jgrapht.graph.SimpleGraph;
+import org.jgrapht.nio.GraphImporter;
+import org.jgrapht.nio.dot.DOTImporter;
+import org.jgrapht.nio.graphml.GraphMLImporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * Reads graphs to colour from files, into a jgrapht graph whose vertices are numbered from 0, in the order
+ * they're first seen in the file. The formats are:
+ * <p>
+ * - DIMACS ({@code .col}): a {@code p edge <vertices> <edges>} line and then an {@code e <from> <to>} line per
+ * edge, with the vertices numbered from 1
+ * - an edge list (anything else): a line per edge with its two vertices as whitespace separated numbers, and
+ * anything after them, such as a weight, is ignored
+ * - DOT ({@code .dot} or {@code .gv}) and GraphML ({@code .graphml}), read with jgrapht-io
+ * <p>
+ * The DIMACS and edge list files can have millions of edges, so they're parsed straight from the bytes as they
+ * stream in, without a String per line or per number. For all of them, blank lines and comment lines ({@code c}
+ * in DIMACS, {@code #} or {@code %} in an edge list) are skipped.
+ * <p>
+ * A colouring doesn't care about direction, loops or repeated edges, so the graph is always simple: edges are
+ * undirected, and loops and repeats are dropped.
+ */
+final class GraphReader {
+
+  private GraphReader() {
+  }
+
+
+  /**
+   * Read a graph from a file, in the format that goes with its extension
+   *
+   * @param file the file
+   * @return the graph
+   * @throws IllegalArgumentException if the file isn't in the format we expect
+   */
+  static Graph<Integer, DefaultEdge> read(Path file) throws IOException {
+    String name = file.getFileName().toString().toLowerCase();
+    if (name.endsWith(".dot") || name.endsWith(".gv")) {
+      try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        return readDot(in);
+      }
+    }
+    if (name.endsWith(".graphml")) {
+      try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        return readGraphMl(in);
+      }
+    }
+    try (InputStream in = Files.newInputStream(file)) {
+      return name.endsWith(".col") ? readDimacs(in) : readEdgeList(in);
+    }
+  }
+
+
+  /**
+   * Read a graph in the DIMACS format
+   *
+   * @param in the file
+   * @return the graph
+   * @throws IllegalArgumentException if the file isn't in the format we expect
+   */
+  static Graph<Integer, DefaultEdge> readDimacs(InputStream in) throws IOException {
+    Bytes bytes = new Bytes(in);
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    int vertexCount = -1;
+
+    int c;
+    while ((c = bytes.skipSpaces()) != -1) {
+      if (c == 'p') {
+        // p edge <vertices> <edges>, where the format's name is sometimes col, or something else
+        bytes.skipWord();
+        vertexCount = bytes.readInt();
+        for (int vertex = 0; vertex != vertexCount; vertex++) {
+          graph.addVertex(vertex);
+        }
+      } else if (c == 'e') {
+        if (vertexCount < 0) {
+          throw bytes.error("an edge comes before the p line");
+        }
+        int from = bytes.readInt() - 1;
+        int to = bytes.readInt() - 1;
+        if (from < 0 || from >= vertexCount || to < 0 || to >= vertexCount) {
+          throw bytes.error(format("the edge %s-%s has a vertex that isn't between 1 and %s", from + 1, to + 1,
+            vertexCount));
+        }
+        addEdge(graph, from, to);
+      } else if (c != 'c' && c != 'n' && c != '\n') {
+        // anything other than comments, and the vertex weights we don't need
+        throw bytes.error(format("unexpected line type '%s'", (char) c));
+      }
+      bytes.skipLine(c);
+    }
+    if (vertexCount < 0) {
+      throw bytes.error("there's no p line");
+    }
+    return graph;
+  }
+
+
+  /**
+   * Read a graph in the edge list format
+   *
+   * @param in the file
+   * @return the graph
+   * @throws IllegalArgumentException if the file isn't in the format we expect
+   */
+  static Graph<Integer, DefaultEdge> readEdgeList(InputStream in) throws IOException {
+    Bytes bytes = new Bytes(in);
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    // the vertices in the file can be any numbers, so they're numbered again from 0
+    Map<Integer, Integer> vertices = new HashMap<>();
+
+    int c;
+    while ((c = bytes.skipSpaces()) != -1) {
+      if (c >= '0' && c <= '9') {
+        bytes.unread();
+        int from = vertex(graph, vertices, bytes.readInt());
+        int to = vertex(graph, vertices, bytes.readInt());
+        addEdge(graph, from, to);
+      } else if (c != '#' && c != '%' && c != '\n') {
+        throw bytes.error(format("unexpected character '%s'", (char) c));
+      }
+      bytes.skipLine(c);
+    }
+    return graph;
+  }
+
+
+  /**
+   * Read a graph in the DOT format
+   *
+   * @param in the file
+   * @return the graph
+   * @throws org.jgrapht.nio.ImportException if the file isn't in the format we expect
+   */
+  static Graph<Integer, DefaultEdge> readDot(Reader in) {
+    DOTImporter<Integer, DefaultEdge> importer = new DOTImporter<>();
+    return importGraph(importer, importer::setVertexFactory, in);
+  }
+
+  /**
+   * Read a graph in the GraphML format
+   *
+   * @param in the file
+   * @return the graph
+   * @throws org.jgrapht.nio.ImportException if the file isn't in the format we expect
+   */
+  static Graph<Integer, DefaultEdge> readGraphMl(Reader in) {
+    GraphMLImporter<Integer, DefaultEdge> importer = new GraphMLImporter<>();
+    return importGraph(importer, importer::setVertexFactory, in);
+  }
+
+
+  /**
+   * Import a graph with jgrapht-io. The file could be directed, or have loops or repeated edges, so it's read
+   * into a pseudograph, which can hold anything, and then copied into a simple graph.
+   */
+  private static Graph<Integer, DefaultEdge> importGraph(GraphImporter<Integer, DefaultEdge> importer,
+                                                        Consumer<Function<String, Integer>> vertexFactory,
+                                                        Reader in) {
+    // number the vertices in the order they're first seen, whatever their ids in the file
+    Map<String, Integer> ids = new HashMap<>();
+    vertexFactory.accept(id -> ids.computeIfAbsent(id, k -> ids.size()));
+
+    Graph<Integer, DefaultEdge> imported = new Pseudograph<>(DefaultEdge.class);
+    importer.importGraph(imported, in);
+
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    for (int vertex = 0; vertex != ids.size(); vertex++) {
+      graph.addVertex(vertex);
+    }
+    for (DefaultEdge edge : imported.edgeSet()) {
+      addEdge(graph, imported.getEdgeSource(edge), imported.getEdgeTarget(edge));
+    }
+    return graph;
+  }
+
+  /**
+   * Add an edge, unless it's a loop or we already have it
+   */
+  private static void addEdge(Graph<Integer, DefaultEdge> graph, int from, int to) {
+    if (from != to) {
+      graph.addEdge(from, to);
+    }
+  }
+
+  /**
+   * @return the vertex for a number in an edge list, which is added to the graph the first time it's seen
+   */
+  private static int vertex(Graph<Integer, DefaultEdge> graph, Map<Integer, Integer> vertices, int number) {
+    Integer vertex = vertices.get(number);
+    if (vertex == null) {
+      vertex = vertices.size();
+      vertices.put(number, vertex);
+      graph.addVertex(vertex);
+    }
+    return vertex;
+  }
+
+
+  /**
+   * The bytes of a file, read through a buffer, with just enough parsing for the line based formats
+   */
+  private static final class Bytes {
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position;
+    private int limit;
+    private int line = 1;
+
+    private Bytes(InputStream in) {
+      this.in = in;
+    }
+
+    private int next() throws IOException {
+      if (position == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[position++] & 0xff;
+    }
+
+    /**
+     * Step back over the byte we just read, which is always still in the buffer
+     */
+    private void unread() {
+      position--;
+    }
+
+    /**
+     * @return the next byte that isn't a space, tab or carriage return, or -1 at the end of the file
+     */
+    private int skipSpaces() throws IOException {
+      int c;
+      do {
+        c = next();
+      } while (c == ' ' || c == '\t' || c == '\r');
+      return c;
+    }
+
+    /**
+     * Skip to the start of the next line
+     *
+     * @param c the byte we're at
+     */
+    private void skipLine(int c) throws IOException {
+      while (c != '\n' && c != -1) {
+        c = next();
+      }
+      line++;
+    }
+
+    /**
+     * Skip a word, and the spaces before it
+     */
+    private void skipWord() throws IOException {
+      int c = skipSpaces();
+      while (c != ' ' && c != '\t' && c != '\r' && c != '\n' && c != -1) {
+        c = next();
+      }
+      if (c != -1) {
+        unread();
+      }
+    }
+
+    /**
+     * Read a number that's not negative, and the spaces before it
+     */
+    private int readInt() throws IOException {
+      int c = skipSpaces();
+      if (c < '0' || c > '9') {
+        throw error(c == -1 || c == '\n' ? "expected a number" : format("unexpected character '%s'", (char) c));
+      }
+      long value = 0;
+      while (c >= '0' && c <= '9') {
+        value = value * 10 + c - '0';
+        if (value > Integer.MAX_VALUE) {
+          throw error("the number is too big");
+        }
+        c = next();
+      }
+      if (c != -1) {
+        unread();
+      }
+      return (int) value;
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(format("At line %s: %s", line, message));
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.sonalake.choco;
+
+import org.jgrapht.Graph;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Quick colourings of a graph that keep to the limit on how often a colour can be used, to start the search
+ * from. They won't usually use the least number of colours, but they get close, in the time it takes to go over
+ * the edges a few times:
+ * <p>
+ * - largest first: colour the vertices with the most neighbours first, each with the lowest colour it can have
+ * - DSATUR: colour the vertex whose neighbours already have the most different colours next, breaking ties by
+ * the number of neighbours, each with the lowest colour it can have
+ * <p>
+ * A colour can't be used for a vertex if a neighbour has it, or if it's already been used as often as it can
+ * be, in which case the vertex gets the next colour along; so there's always a colour for it, and the colouring
+ * is always valid. Colours are numbered from 1, as they are in the model.
+ */
+final class HeuristicColouring {
+
+  private HeuristicColouring() {
+  }
+
+
+  /**
+   * Colour a graph with whichever of the heuristics needs the fewest colours
+   *
+   * @param graph             the graph, with its vertices numbered from 0
+   * @param maxUsagePerColour the most vertices that can have the same colour
+   * @return the colour of each vertex, from 1
+   */
+  static int[] best(Graph<Integer, DefaultEdge> graph, int maxUsagePerColour) {
+    int[][] neighbours = neighbours(graph);
+    int[] dsatur = dsatur(neighbours, maxUsagePerColour);
+    int[] largestFirst = largestFirst(neighbours, maxUsagePerColour);
+    return colourCount(largestFirst) < colourCount(dsatur) ? largestFirst : dsatur;
+  }
+
+  /**
+   * @param colours the colour of each vertex, from 1
+   * @return how many colours there are
+   */
+  static int colourCount(int[] colours) {
+    int max = 0;
+    for (int colour : colours) {
+      max = Math.max(max, colour);
+    }
+    return max;
+  }
+
+
+  /**
+   * Colour the vertices with the most neighbours first
+   */
+  static int[] largestFirst(int[][] neighbours, int maxUsagePerColour) {
+    int vertexCount = neighbours.length;
+    Integer[] order = new Integer[vertexCount];
+    for (int vertex = 0; vertex != vertexCount; vertex++) {
+      order[vertex] = vertex;
+    }
+    Arrays.sort(order, Comparator.comparingInt((Integer vertex) -> -neighbours[vertex].length)
+      .thenComparingInt(vertex -> vertex));
+
+    int[] colours = new int[vertexCount];
+    int[] usage = new int[vertexCount + 2];
+    BitSet taken = new BitSet();
+    for (int vertex : order) {
+      taken.clear();
+      for (int neighbour : neighbours[vertex]) {
+        taken.set(colours[neighbour]);
+      }
+      colours[vertex] = lowestColour(taken, usage, maxUsagePerColour);
+      usage[colours[vertex]]++;
+    }
+    return colours;
+  }
+
+
+  /**
+   * Colour the vertex with the most differently coloured neighbours next
+   */
+  static int[] dsatur(int[][] neighbours, int maxUsagePerColour) {
+    int vertexCount = neighbours.length;
+    int[] colours = new int[vertexCount];
+    int[] usage = new int[vertexCount + 2];
+    // the colours each vertex's neighbours have, and how many different ones that is
+    BitSet[] neighbourColours = new BitSet[vertexCount];
+    int[] saturation = new int[vertexCount];
+
+    // the vertices still to colour, the one to colour next first
+    TreeSet<Integer> queue = new TreeSet<>(Comparator.comparingInt((Integer vertex) -> -saturation[vertex])
+      .thenComparingInt(vertex -> -neighbours[vertex].length)
+      .thenComparingInt(vertex -> vertex));
+    for (int vertex = 0; vertex != vertexCount; vertex++) {
+      neighbourColours[vertex] = new BitSet();
+      queue.add(vertex);
+    }
+
+    while (!queue.isEmpty()) {
+      int vertex = queue.pollFirst();
+      int colour = lowestColour(neighbourColours[vertex], usage, maxUsagePerColour);
+      colours[vertex] = colour;
+      usage[colour]++;
+
+      for (int neighbour : neighbours[vertex]) {
+        if (colours[neighbour] == 0 && !neighbourColours[neighbour].get(colour)) {
+          // take it out while its saturation changes, so it goes back in the right place
+          queue.remove(neighbour);
+          neighbourColours[neighbour].set(colour);
+          saturation[neighbour]++;
+          queue.add(neighbour);
+        }
+      }
+    }
+    return colours;
+  }
+
+
+  /**
+   * @return the lowest colour from 1 that isn't taken, and hasn't been used up
+   */
+  private static int lowestColour(BitSet taken, int[] usage, int maxUsagePerColour) {
+    int colour = taken.nextClearBit(1);
+    while (usage[colour] >= maxUsagePerColour) {
+      colour = taken.nextClearBit(colour + 1);
+    }
+    return colour;
+  }
+
+  /**
+   * @return the neighbours of each vertex
+   */
+  static int[][] neighbours(Graph<Integer, DefaultEdge> graph) {
+    int[][] neighbours = new int[graph.vertexSet().size()][];
+    for (int vertex : graph.vertexSet()) {
+      List<Integer> list = Graphs.neighborListOf(graph, vertex);
+      neighbours[vertex] = new int[list.size()];
+      for (int i = 0; i != neighbours[vertex].length; i++) {
+        neighbours[vertex][i] = list.get(i);
+      }
+    }
+    return neighbours;
+  }
+}
@@ -0,0 +1,88 @@
+package com.sonalake.choco;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of latencies, so we can report percentiles over millions of samples without keeping
+ * every sample.
+ * <p>
+ * Values are bucketed by their power of two, and each power of two is split into 32 linear sub-buckets, so the
+ * reported percentiles are within ~3% of the real value. Recording is thread safe.
+ */
+class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+  /**
+   * Record a single latency
+   *
+   * @param nanos the latency, in nanoseconds
+   */
+  void record(long nanos) {
+    counts.incrementAndGet(bucketFor(Math.max(0, nanos)));
+  }
+
+  /**
+   * @return how many latencies have been recorded
+   */
+  long count() {
+    long total = 0;
+    for (int i = 0; i != BUCKET_COUNT; i++) {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  /**
+   * Get the value at the given percentile
+   *
+   * @param percentile the percentile, from 0 -> 100
+   * @return the (approximate) latency in nanoseconds, or 0 if nothing was recorded
+   */
+  long percentile(double percentile) {
+    long total = count();
+    if (total == 0) {
+      return 0;
+    }
+
+    // the rank of the sample we want, counting from 1
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i != BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return valueFor(i);
+      }
+    }
+    return valueFor(BUCKET_COUNT - 1);
+  }
+
+  /**
+   * Small values get a bucket each, after that it's the power of two followed by the next 5 bits
+   */
+  private static int bucketFor(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int shift = magnitude - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+    return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /**
+   * The lowest value that would be put in the given bucket
+   */
+  private static long valueFor(int bucket) {
+    if (bucket < SUB_BUCKET_COUNT) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKET_COUNT - 1;
+    long subBucket = bucket % SUB_BUCKET_COUNT;
+    return (SUB_BUCKET_COUNT + subBucket) << shift;
+  }
+}
@@ -2,6 +2,7 @@ package com.sonalake.choco;
 
 import org.chocosolver.solver.Model;
 import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.nary.cnf.ILogical;
 import org.chocosolver.solver.constraints.nary.cnf.LogOp;
 import org.chocosolver.solver.variables.BoolVar;
 
@@ -21,13 +22,8 @@ public class LogicalSatisfiability {
     BoolVar p = model.boolVar("p");
     BoolVar q = model.boolVar("q");
 
-    // the constraint we want to satisfy
-    LogOp constraint = and(
-      or(p, q),
-      or(p, q.not()),
-      or(p.not(), q)
-    );
-    model.addClauses(constraint);
+    // the constraint we want to satisfy: (p or q) and (p or not q) and (not p or q)
+    addClauses(model, new BoolVar[]{p, q}, new int[][]{{1, 2}, {1, -2}, {-1, 2}});
 
 
     // solve it
@@ -41,4 +37,29 @@ public class LogicalSatisfiability {
 
 
   }
+
+
+  /**
+   * Add a statement in conjunctive normal form: every clause has to be true, and a clause is true if any of its
+   * literals are.
+   *
+   * @param model     the model
+   * @param variables the variables in the statement
+   * @param clauses   the clauses, with their literals written as in DIMACS: 1 for the first variable, -1 for not
+   *                  the first variable, and so on
+   */
+  static void addClauses(Model model, BoolVar[] variables, int[][] clauses) {
+    ILogical[] ors = new ILogical[clauses.length];
+    for (int i = 0; i != clauses.length; i++) {
+      BoolVar[] literals = new BoolVar[clauses[i].length];
+      for (int j = 0; j != literals.length; j++) {
+        int literal = clauses[i][j];
+        BoolVar variable = variables[Math.abs(literal) - 1];
+        literals[j] = literal > 0 ? variable : variable.not();
+      }
+      ors[i] = or(literals);
+    }
+    LogOp constraint = and(ors);
+    model.addClauses(constraint);
+  }
 }
@@ -3,12 +3,13 @@ package com.sonalake.choco;
 import de.vandermeer.asciitable.AsciiTable;
 import org.chocosolver.solver.Model;
 import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.Constraint;
 import org.chocosolver.solver.variables.IntVar;
 import org.chocosolver.solver.variables.impl.FixedIntVarImpl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Stream;
 
 import static java.lang.String.format;
 
@@ -18,12 +19,18 @@ import static java.lang.String.format;
  */
 public class Sudoku {
 
-  private static final int SIZE = 9;
-  private static final int SQUARE_SIZE = 3;
   private static final int MIN_VALUE = 1;
-  private static final int MAX_VALUE = SIZE;
 
-  static public void main(String... args) {
+  // how values are written in the one-line format, 1-9 then A-Z then a-z for the bigger grids
+  static final String SYMBOLS = "123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+  static public void main(String... args) throws Exception {
+
+    // if we've been given a file of puzzles then solve them all, rather than the sample
+    if (args.length > 0 && "--batch".equals(args[0])) {
+      SudokuBatch.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
 
     // the world's hardest sudoku ;)
     // https://puzzling.stackexchange.com/questions/252/how-do-i-solve-the-worlds-hardest-sudoku
@@ -56,32 +63,116 @@ public class Sudoku {
     solver.showShortStatistics();
     solver.solve();
 
-    // print out the solution
+    // print out the solution, and how hard it was to find
     printGrid(grid, true);
+    System.out.println("Grade: " + SudokuGrade.of(solver));
+  }
+
+
+  /**
+   * Solve the given puzzle, without any of the printing. The cells forced by {@link SudokuSingles} are filled
+   * in first, and a new model is only built if there are any left.
+   *
+   * @param predefinedRows the predefined values, 0 means unknown
+   * @return the solved values in the form of [row][column], or null if there is no solution
+   */
+  static int[][] solve(int[][] predefinedRows) {
+    int size = predefinedRows.length;
+    int[][] solution = new int[size][];
+    for (int row = 0; row != size; row++) {
+      solution[row] = predefinedRows[row].clone();
+    }
+    SudokuSingles.Outcome outcome = SudokuSingles.fill(solution);
+    if (outcome == SudokuSingles.Outcome.SOLVED) {
+      return solution;
+    } else if (outcome == SudokuSingles.Outcome.CONTRADICTION) {
+      return null;
+    }
+
+    Model model = new Model("sudoku");
+    IntVar[][] grid = buildGrid(model, solution);
+    applyConnectionConstraints(model, grid);
+
+    if (!model.getSolver().solve()) {
+      return null;
+    }
+
+    for (int row = 0; row != size; row++) {
+      for (int col = 0; col != size; col++) {
+        solution[row][col] = grid[row][col].getValue();
+      }
+    }
+    return solution;
+  }
+
+
+  /**
+   * Read a puzzle in the common one-line format: one character per cell, going in rows, where either 0 or . is
+   * an unknown. The size of the grid comes from the length of the line, so 81 characters is a 9x9 grid and 256
+   * is a 16x16. Values are written as 1-9, then A-Z, then a-z, so a 16x16 grid uses 1-9 and A-G.
+   *
+   * @param line the puzzle line
+   * @return the predefined values in the form of [row][column], 0 means unknown
+   */
+  static int[][] parse(CharSequence line) {
+    SudokuLayout layout = SudokuLayout.ofCellCount(line.length());
+    int size = layout.size();
+
+    int[][] predefinedRows = new int[size][size];
+    for (int i = 0; i != layout.cellCount(); i++) {
+      char c = line.charAt(i);
+      if (c == '.' || c == '0') {
+        continue;
+      }
+      int value = SYMBOLS.indexOf(c) + 1;
+      if (value < MIN_VALUE || value > size) {
+        throw new IllegalArgumentException(format("Unexpected character '%s' at position %s", c, i));
+      }
+      predefinedRows[i / size][i % size] = value;
+    }
+    return predefinedRows;
+  }
+
+
+  /**
+   * Write a grid out in the same one-line format that {@link #parse(CharSequence)} reads
+   *
+   * @param values the values in the form of [row][column], 0 means unknown
+   * @return the line, with one character per cell
+   */
+  static String toLine(int[][] values) {
+    StringBuilder line = new StringBuilder(values.length * values.length);
+    for (int[] row : values) {
+      for (int value : row) {
+        line.append(value < MIN_VALUE ? '.' : SYMBOLS.charAt(value - 1));
+      }
+    }
+    return line.toString();
   }
 
 
   /**
    * Build a grid in the form of [row][column]. Where we have a fixed value we just use a simple intvar.
-   * Where we have a 0 (i.e. an unknown) we put it a bounded intvar (from 1->9)
+   * Where we have a 0 (i.e. an unknown) we put it a bounded intvar (from 1->size)
    *
    * @param model          the model into which the variables will be created
-   * @param predefinedRows the predefined values
+   * @param predefinedRows the predefined values, this also decides the size of the grid
    * @return the created grid of variables.
    */
-  private static IntVar[][] buildGrid(Model model, int[][] predefinedRows) {
+  static IntVar[][] buildGrid(Model model, int[][] predefinedRows) {
     // this grid will contain variables in the same shape as the input
-    IntVar[][] grid = new IntVar[SIZE][SIZE];
+    int size = SudokuLayout.of(predefinedRows.length).size();
+    IntVar[][] grid = new IntVar[size][size];
 
     // check all the predefined values
-    // if they're 0: create them as bounded variables across the colour range (1-9)
+    // if they're 0: create them as bounded variables across the colour range (1-size)
     // otherwise create them as a constance
-    for (int row = 0; row != SIZE; row++) {
-      for (int col = 0; col != SIZE; col++) {
+    for (int row = 0; row != size; row++) {
+      for (int col = 0; col != size; col++) {
         int value = predefinedRows[row][col];
         // is this an unknown? if so then create it as a bounded variable
         if (value < MIN_VALUE) {
-          grid[row][col] = model.intVar(format("[%s.%s]", row, col), MIN_VALUE, MAX_VALUE);
+          grid[row][col] = model.intVar(format("[%s.%s]", row, col), MIN_VALUE, size);
         } else {
           // otherwise we have an actual value, so create it as a constant
           grid[row][col] = model.intVar(value);
@@ -99,15 +190,75 @@ public class Sudoku {
    * @param model the model in which constraints will be stored
    * @param grid  the grid
    */
-  private static void applyConnectionConstraints(Model model, IntVar[][] grid) {
+  static void applyConnectionConstraints(Model model, IntVar[][] grid) {
+    applyConnectionConstraints(model, grid, SudokuConfig.Consistency.DEFAULT);
+  }
+
+  /**
+   * Given the grid, apply the constraints that stop cells in the same row / column / square having the same values
+   *
+   * @param model       the model in which constraints will be stored
+   * @param grid        the grid
+   * @param consistency how hard the constraints should work to remove values
+   */
+  static void applyConnectionConstraints(Model model, IntVar[][] grid, SudokuConfig.Consistency consistency) {
+    applyConnectionConstraints(model, grid, SudokuLayout.of(grid.length), consistency);
+  }
+
+  /**
+   * Given the grid, apply the constraints that stop cells in the same row / column / region having the same
+   * values, where the regions come from the layout: squares for a standard grid, or any shape for a jigsaw
+   *
+   * @param model       the model in which constraints will be stored
+   * @param grid        the grid
+   * @param layout      the shape of the grid, which must be the same size as the grid
+   * @param consistency how hard the constraints should work to remove values
+   */
+  static void applyConnectionConstraints(Model model, IntVar[][] grid, SudokuLayout layout,
+                                         SudokuConfig.Consistency consistency) {
+    applyLineConstraints(model, grid, consistency);
+    for (Constraint constraint : regionConstraints(model, grid, layout, consistency)) {
+      constraint.post();
+    }
+  }
+
+  /**
+   * Given the grid, apply the constraints that stop cells in the same row / column having the same values. These
+   * are the same for every variant, so a model that's reused for puzzles with different regions can start with
+   * just these.
+   *
+   * @param model       the model in which constraints will be stored
+   * @param grid        the grid
+   * @param consistency how hard the constraints should work to remove values
+   */
+  static void applyLineConstraints(Model model, IntVar[][] grid, SudokuConfig.Consistency consistency) {
+    String level = consistency.chocoName();
     // all the rows are different
-    for (int i = 0; i != SIZE; i++) {
-      model.allDifferent(getCellsInRow(grid, i)).post();
-      model.allDifferent(getCellsInColumn(grid, i)).post();
-      model.allDifferent(getCellsInSquare(grid, i)).post();
+    for (int i = 0; i != grid.length; i++) {
+      model.allDifferent(getCellsInRow(grid, i), level).post();
+      model.allDifferent(getCellsInColumn(grid, i), level).post();
     }
   }
 
+  /**
+   * Build, but don't post, the constraints that stop cells in the same region having the same values
+   *
+   * @param model       the model in which constraints will be built
+   * @param grid        the grid
+   * @param layout      the shape of the grid, which must be the same size as the grid
+   * @param consistency how hard the constraints should work to remove values
+   * @return a constraint for each region
+   */
+  static List<Constraint> regionConstraints(Model model, IntVar[][] grid, SudokuLayout layout,
+                                            SudokuConfig.Consistency consistency) {
+    String level = consistency.chocoName();
+    List<Constraint> constraints = new ArrayList<>(layout.size());
+    for (int i = 0; i != layout.size(); i++) {
+      constraints.add(model.allDifferent(getCells(grid, layout.region(i)), level));
+    }
+    return constraints;
+  }
+
 
   /**
    * Get the variables that are in a given row
@@ -128,30 +279,23 @@ public class Sudoku {
    * @return all the variables in this column
    */
   private static IntVar[] getCellsInColumn(IntVar[][] grid, int column) {
-    return Stream.of(grid).map(row -> row[column]).toArray(IntVar[]::new);
+    return getCells(grid, SudokuLayout.of(grid.length).column(column));
   }
 
   /**
-   * Get the variables in the given square within the overall grid. There being 9 3x3 squares, starting at 0,0
+   * Get the variables for the given cells
    *
-   * @param grid   the grid
-   * @param square the square, numbered 1->9, going in rows
-   * @return the variables in the given square
+   * @param grid  the grid
+   * @param cells the cells, numbered going in rows
+   * @return the variables, in the same order as the cells
    */
-  private static IntVar[] getCellsInSquare(IntVar[][] grid, int square) {
-    List<IntVar> results = new ArrayList<>();
-    // where does this square start in the grid
-    int startRow = SQUARE_SIZE * (square / (SIZE / SQUARE_SIZE));
-    int startColumn = SQUARE_SIZE * (square % (SIZE / SQUARE_SIZE));
-
-    // get every cell in this square
-    for (int row = startRow; row != startRow + SQUARE_SIZE; row++) {
-      for (int column = startColumn; column != startColumn + SQUARE_SIZE; column++) {
-        results.add(grid[row][column]);
-      }
+  static IntVar[] getCells(IntVar[][] grid, int[] cells) {
+    int size = grid.length;
+    IntVar[] results = new IntVar[cells.length];
+    for (int i = 0; i != cells.length; i++) {
+      results[i] = grid[cells[i] / size][cells[i] % size];
     }
-
-    return results.toArray(new IntVar[0]);
+    return results;
   }
 
 
@@ -170,9 +314,9 @@ public class Sudoku {
     at.addRule();
 
     // add each row to the table
-    for (int row = 0; row != SIZE; row++) {
+    for (int row = 0; row != grid.length; row++) {
       List<String> labels = new ArrayList<>();
-      for (int column = 0; column != SIZE; column++) {
+      for (int column = 0; column != grid.length; column++) {
         IntVar variable = grid[row][column];
 
         boolean isOriginalNumber = variable instanceof FixedIntVarImpl;
@@ -0,0 +1,365 @@
+package com.sonalake.choco;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiPredicate;
+
+import static java.lang.String.format;
+
+/**
+ * Solves a file of sudoku puzzles, one per line in the common one-line format, and writes the solutions to
+ * another file, one per line and in the same order. Puzzles can be of any size (9x9, 16x16, 25x25...), and the
+ * sizes can be mixed within the file.
+ * <p>
+ * The puzzles are streamed: the input is memory mapped and parsed straight into grids by a
+ * {@link SudokuMappedReader}, and we only ever hold the puzzles that are currently being solved, so the input can
+ * be as big as we like. Puzzles with no solution are written out as a line of dots.
+ * <p>
+ * A puzzle can be followed by the fields of a {@link SudokuVariant}, so killer and jigsaw puzzles can be in the
+ * same file as the classic ones. Only the solution is written out, not the fields.
+ * <p>
+ * When checking uniqueness, each solution is followed by a space and then UNIQUE, MULTIPLE or NONE. For a puzzle
+ * with more than one solution it's the first one we found that is written. When grading, each line then ends with
+ * a space and the difficulty tier (EASY, MEDIUM, HARD or EXTREME).
+ * <p>
+ * Usage: {@code SudokuBatch <puzzles file> <solutions file> [threads] [options]}, where the options are:
+ * <p>
+ * - {@code --consistency=AC|BC|FC|NEQS|DEFAULT}: how the allDifferent constraints propagate
+ * - {@code --unique}: check that each puzzle has exactly one solution
+ * - {@code --grade}: grade how hard each puzzle was to solve
+ * - {@code --strategy=DEFAULT|DOM_WDEG|ACTIVITY|MIN_DOM|LAST_CONFLICT|RANDOM}: how the search picks cells and
+ * values
+ * - {@code --restarts}: restart the search using the Luby sequence
+ * - {@code --no-singles}: leave every puzzle to choco, rather than filling in the naked and hidden singles first
+ * - {@code --cache=N}: keep the solutions of up to N puzzles, so repeats (and shuffled copies) of a 9x9 puzzle
+ * aren't solved again. This can't be used with {@code --unique} or {@code --grade}, as a cached answer has no
+ * search behind it. The variants are never cached
+ * - {@code --portfolio}: if a puzzle runs over its budget, race a {@link SudokuPortfolio} of differently
+ * configured models on it, and take the first answer. This can't be used with {@code --unique} or
+ * {@code --grade} either
+ * - {@code --budget-nodes=N}, {@code --budget-ms=N}: how many nodes, and how long, a puzzle can take before it
+ * goes to the portfolio, by default 1000 nodes and 20ms
+ */
+public class SudokuBatch {
+
+  // how many puzzles can be waiting or in flight for each worker thread
+  private static final int PUZZLES_PER_THREAD = 4;
+
+  // the budget for a puzzle before it goes to the portfolio
+  private static final long DEFAULT_BUDGET_NODES = 1000;
+  private static final long DEFAULT_BUDGET_MILLIS = 20;
+
+  private final int threads;
+  private final SudokuConfig config;
+  private final boolean checkUniqueness;
+  private final boolean grade;
+  // null if we're not caching
+  private final SudokuSolutionCache cache;
+  private final boolean portfolio;
+  private final long budgetNodes;
+  private final long budgetMillis;
+  // each worker builds its sudoku model once per grid size, and then reuses it for every puzzle it's given. The
+  // jigsaws need a model without the squares, so theirs are kept under the negative of the size
+  private final ThreadLocal<Map<Integer, SudokuEngine>> engines = ThreadLocal.withInitial(HashMap::new);
+  // and the same for the portfolios, whose members all run on a pool of their own
+  private final ThreadLocal<Map<Integer, SudokuPortfolio>> portfolios = ThreadLocal.withInitial(HashMap::new);
+  private final Queue<SudokuPortfolio> allPortfolios = new ConcurrentLinkedQueue<>();
+  private ExecutorService portfolioWorkers;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final AtomicLong unsolved = new AtomicLong();
+  private final AtomicLong multiple = new AtomicLong();
+  private final AtomicLongArray tiers = new AtomicLongArray(SudokuGrade.Tier.values().length);
+  private long elapsedNanos;
+
+  SudokuBatch(int threads, SudokuConfig config, boolean checkUniqueness, boolean grade,
+              SudokuSolutionCache cache) {
+    this(threads, config, checkUniqueness, grade, cache, false, DEFAULT_BUDGET_NODES, DEFAULT_BUDGET_MILLIS);
+  }
+
+  SudokuBatch(int threads, SudokuConfig config, boolean checkUniqueness, boolean grade,
+              SudokuSolutionCache cache, boolean portfolio, long budgetNodes, long budgetMillis) {
+    if (cache != null && (checkUniqueness || grade)) {
+      throw new IllegalArgumentException("The cache can't be used when checking uniqueness or grading");
+    }
+    if (checkUniqueness && config.searchRestarts()) {
+      throw new IllegalArgumentException("Uniqueness can't be checked with a search that restarts");
+    }
+    if (portfolio && (checkUniqueness || grade)) {
+      throw new IllegalArgumentException("The portfolio can't be used when checking uniqueness or grading");
+    }
+    this.threads = threads;
+    this.config = config;
+    this.checkUniqueness = checkUniqueness;
+    this.grade = grade;
+    this.cache = cache;
+    this.portfolio = portfolio;
+    this.budgetNodes = budgetNodes;
+    this.budgetMillis = budgetMillis;
+  }
+
+  static public void main(String... args) throws IOException, InterruptedException, ExecutionException {
+    // split the args into the options and the rest
+    List<String> arguments = new ArrayList<>();
+    SudokuConfig config = SudokuConfig.DEFAULT;
+    boolean checkUniqueness = false;
+    boolean grade = false;
+    SudokuSolutionCache cache = null;
+    boolean portfolio = false;
+    long budgetNodes = DEFAULT_BUDGET_NODES;
+    long budgetMillis = DEFAULT_BUDGET_MILLIS;
+    for (String arg : args) {
+      if ("--unique".equals(arg)) {
+        checkUniqueness = true;
+      } else if ("--grade".equals(arg)) {
+        grade = true;
+      } else if (arg.startsWith("--strategy=")) {
+        config = config.withStrategy(SudokuConfig.Strategy.valueOf(optionValue(arg)));
+      } else if ("--restarts".equals(arg)) {
+        config = config.withRestarts(true);
+      } else if ("--no-singles".equals(arg)) {
+        config = config.withSingles(false);
+      } else if (arg.startsWith("--consistency=")) {
+        config = config.withConsistency(SudokuConfig.Consistency.valueOf(optionValue(arg)));
+      } else if ("--portfolio".equals(arg)) {
+        portfolio = true;
+      } else if (arg.startsWith("--budget-nodes=")) {
+        budgetNodes = Long.parseLong(optionValue(arg));
+      } else if (arg.startsWith("--budget-ms=")) {
+        budgetMillis = Long.parseLong(optionValue(arg));
+      } else if (arg.startsWith("--cache=")) {
+        cache = new SudokuSolutionCache(Long.parseLong(optionValue(arg)));
+      } else if (arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unknown option: " + arg);
+      } else {
+        arguments.add(arg);
+      }
+    }
+
+    if (arguments.size() < 2) {
+      System.err.println("Usage: SudokuBatch <puzzles file> <solutions file> [threads] [--consistency=AC] "
+        + "[--strategy=DOM_WDEG] [--restarts] [--unique] [--grade] [--no-singles] [--cache=N] [--portfolio] "
+        + "[--budget-nodes=1000] [--budget-ms=20]");
+      return;
+    }
+
+    Path input = Paths.get(arguments.get(0));
+    Path output = Paths.get(arguments.get(1));
+    int threads = arguments.size() > 2
+      ? Integer.parseInt(arguments.get(2))
+      : Runtime.getRuntime().availableProcessors();
+
+    SudokuBatch batch = new SudokuBatch(threads, config, checkUniqueness, grade, cache, portfolio, budgetNodes,
+      budgetMillis);
+    try (SudokuMappedReader reader = SudokuMappedReader.open(input);
+         SudokuWriter writer = new SudokuWriter(FileChannel.open(output, StandardOpenOption.CREATE,
+           StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+      batch.run(reader, writer);
+    }
+    batch.printReport();
+  }
+
+  private static String optionValue(String arg) {
+    return arg.substring(arg.indexOf('=') + 1);
+  }
+
+
+  /**
+   * Solve every puzzle in the reader, and write the solutions to the writer.
+   * <p>
+   * Puzzles are handed to a fixed pool of workers, but we only let a few of them per worker be in flight at any
+   * time. When that window is full we wait for the oldest one, write it out, and only then read the next
+   * puzzle; this keeps the memory use flat and the output in the same order as the input.
+   *
+   * @param reader the puzzles, one per line. Blank lines and lines starting with # are skipped
+   * @param writer where the solutions are written
+   */
+  void run(SudokuMappedReader reader, SudokuWriter writer) throws IOException, InterruptedException,
+    ExecutionException {
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    if (portfolio) {
+      // enough for every worker to be racing a portfolio at once
+      portfolioWorkers = Executors.newFixedThreadPool(threads * SudokuPortfolio.MEMBERS);
+    }
+    Deque<Future<Answer>> inFlight = new ArrayDeque<>();
+    long start = System.nanoTime();
+    try {
+      int[][] predefinedRows;
+      while ((predefinedRows = reader.next()) != null) {
+        int[][] puzzle = predefinedRows;
+        SudokuVariant variant = reader.variant();
+        inFlight.addLast(workers.submit(() -> solve(puzzle, variant)));
+
+        // the window is full, so wait for the oldest puzzle before reading any more
+        if (inFlight.size() >= threads * PUZZLES_PER_THREAD) {
+          write(writer, inFlight.removeFirst().get());
+        }
+      }
+
+      // and then whatever is left
+      while (!inFlight.isEmpty()) {
+        write(writer, inFlight.removeFirst().get());
+      }
+    } finally {
+      workers.shutdownNow();
+      workers.awaitTermination(1, TimeUnit.MINUTES);
+      if (portfolioWorkers != null) {
+        portfolioWorkers.shutdownNow();
+        portfolioWorkers.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      elapsedNanos = System.nanoTime() - start;
+    }
+  }
+
+
+  /**
+   * Solve a single puzzle, and record how long it took
+   */
+  private Answer solve(int[][] predefinedRows, SudokuVariant variant) {
+    long start = System.nanoTime();
+    int size = predefinedRows.length;
+    int key = variant.layout().isStandard() ? size : -size;
+    SudokuEngine engine = engines.get().computeIfAbsent(key, k -> new SudokuEngine(size, config, k < 0));
+
+    int[][] solution = new int[size][size];
+    SudokuEngine.Uniqueness uniqueness;
+    if (checkUniqueness) {
+      uniqueness = engine.checkUniqueness(predefinedRows, variant, solution);
+    } else {
+      SudokuPortfolio racer = portfolio ? portfolio(key) : null;
+      BiPredicate<int[][], int[][]> solver = racer != null
+        ? (puzzle, into) -> racer.solve(puzzle, variant, into)
+        : (puzzle, into) -> engine.solve(puzzle, variant, into);
+      // the canonical form only knows about the classic rules
+      boolean solved = cache != null && variant.isClassic()
+        ? cache.solve(predefinedRows, solution, solver)
+        : solver.test(predefinedRows, solution);
+      // we don't know if it's unique, but we don't care either
+      uniqueness = solved ? SudokuEngine.Uniqueness.UNIQUE : SudokuEngine.Uniqueness.NONE;
+    }
+    // this only reads the solver's counters, so it's cheap enough to do as part of the solve
+    SudokuGrade.Tier tier = null;
+    if (grade) {
+      tier = engine.grade().tier();
+      tiers.incrementAndGet(tier.ordinal());
+    }
+    latencies.record(System.nanoTime() - start);
+
+    if (uniqueness == SudokuEngine.Uniqueness.NONE) {
+      unsolved.incrementAndGet();
+      // a grid of unknowns, of the same size
+      solution = new int[size][size];
+    } else if (uniqueness == SudokuEngine.Uniqueness.MULTIPLE) {
+      multiple.incrementAndGet();
+    }
+    return new Answer(solution, uniqueness, tier);
+  }
+
+
+  private void write(SudokuWriter writer, Answer answer) throws IOException {
+    writer.write(answer.solution);
+    if (checkUniqueness) {
+      writer.writeField(answer.uniqueness.name());
+    }
+    if (grade) {
+      writer.writeField(answer.tier.name());
+    }
+    writer.endLine();
+  }
+
+
+  /**
+   * @param key the size of the grid, or its negative for a jigsaw, as for the engines
+   */
+  private SudokuPortfolio portfolio(int key) {
+    return portfolios.get().computeIfAbsent(key, k -> {
+      SudokuPortfolio portfolio = new SudokuPortfolio(Math.abs(k), config, k < 0, budgetNodes, budgetMillis,
+        portfolioWorkers);
+      allPortfolios.add(portfolio);
+      return portfolio;
+    });
+  }
+
+
+  /**
+   * Print out the throughput and latency of the last run
+   */
+  void printReport() {
+    long puzzles = latencies.count();
+    double seconds = elapsedNanos / 1e9;
+
+    System.out.println(format("Solved %s puzzles (%s with no solution) in %.3fs using %s threads (%s)",
+      puzzles, unsolved.get(), seconds, threads, config));
+    if (checkUniqueness) {
+      System.out.println(format("\tuniqueness: %s with more than one solution", multiple.get()));
+    }
+    if (portfolio) {
+      System.out.println("\tportfolio: " + portfolioReport());
+    }
+    if (cache != null) {
+      System.out.println(format("\tcache: %s hits, %s misses", cache.hits(), cache.misses()));
+    }
+    if (grade) {
+      StringBuilder counts = new StringBuilder();
+      for (SudokuGrade.Tier tier : SudokuGrade.Tier.values()) {
+        counts.append(format(" %s %s", tier, tiers.get(tier.ordinal())));
+      }
+      System.out.println("\tgrades:" + counts);
+    }
+    System.out.println(format("\tthroughput: %.1f puzzles/s", seconds > 0 ? puzzles / seconds : 0));
+    System.out.println(format("\tlatency: p50 %.3fms, p99 %.3fms",
+      latencies.percentile(50) / 1e6, latencies.percentile(99) / 1e6));
+  }
+
+
+  /**
+   * @return how many puzzles went to the portfolios, and which members won them
+   */
+  private String portfolioReport() {
+    long escalations = 0;
+    Map<String, Long> wins = new LinkedHashMap<>();
+    for (SudokuPortfolio portfolio : allPortfolios) {
+      escalations += portfolio.escalations();
+      List<String> names = portfolio.memberNames();
+      for (int i = 0; i != names.size(); i++) {
+        wins.merge(names.get(i), portfolio.wins(i), Long::sum);
+      }
+    }
+    return format("%s over budget, wins %s", escalations, wins);
+  }
+
+
+  /**
+   * What a worker found for a single puzzle
+   */
+  private static final class Answer {
+    private final int[][] solution;
+    private final SudokuEngine.Uniqueness uniqueness;
+    // only set when grading
+    private final SudokuGrade.Tier tier;
+
+    private Answer(int[][] solution, SudokuEngine.Uniqueness uniqueness, SudokuGrade.Tier tier) {
+      this.solution = solution;
+      this.uniqueness = uniqueness;
+      this.tier = tier;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package com.sonalake.choco;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.constraints.extension.Tuples;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * A cage in a killer sudoku: a group of cells whose values all have to be different, and have to add up to the
+ * cage's total.
+ * <p>
+ * A sum constraint on its own only keeps the bounds of each cell consistent, so for a cage of 3 cells adding up
+ * to 6 it can't see that the cells have to be exactly 1, 2 and 3. So for the cages that are small enough we
+ * post a table of every way of filling the cage instead, which choco keeps arc consistent: every value that's
+ * left in a cell is part of at least one way of filling the whole cage. The tables only depend on the size of
+ * the grid, the number of cells and the total, so they're worked out once and shared, keeping the most recently
+ * used. The bigger cages, which would have too many rows, get a sum and an allDifferent.
+ * <p>
+ * The cages can come from anyone who can send a puzzle, so a total that no cage of its size can add up to is
+ * refused up front, and working out a table stops after a fixed number of steps, whatever the cage.
+ */
+final class SudokuCage {
+
+  // the biggest table we'll post for a cage
+  private static final int MAX_TUPLES = 4096;
+  // the most values we'll try while looking for the sets that fill a cage, before giving up on a table
+  private static final int MAX_STEPS = 1 << 20;
+  // how many tables we keep
+  private static final int MAX_TABLES = 1024;
+
+  // the ways of filling a cage, for each grid size, cage size and total
+  private static final LoadingCache<List<Integer>, int[][]> TABLES = CacheBuilder.newBuilder()
+    .maximumSize(MAX_TABLES)
+    .build(CacheLoader.from(key -> buildTable(key.get(0), key.get(1), key.get(2))));
+  // what's kept instead when there are too many ways for a table
+  private static final int[][] TOO_BIG = {};
+
+  private final int total;
+  private final int[] cells;
+
+  /**
+   * @param total what the cells have to add up to
+   * @param cells the cells in the cage, numbered going in rows
+   */
+  SudokuCage(int total, int... cells) {
+    if (cells.length == 0) {
+      throw new IllegalArgumentException("A cage needs at least one cell");
+    }
+    this.total = total;
+    this.cells = cells.clone();
+  }
+
+  /**
+   * @return what the cells have to add up to
+   */
+  int total() {
+    return total;
+  }
+
+  /**
+   * @return the cells in the cage, numbered going in rows
+   */
+  int[] cells() {
+    return cells.clone();
+  }
+
+  /**
+   * Check the cells are all in a grid of the given size, and that different values of that grid can add up to
+   * the total
+   *
+   * @param size the number of cells in a row
+   */
+  void checkFits(int size) {
+    for (int cell : cells) {
+      if (cell < 0 || cell >= size * size) {
+        throw new IllegalArgumentException(format("Cage %s has a cell outside of a %sx%s grid", this, size, size));
+      }
+    }
+    // the lowest values, and the highest, are the least and the most the cells can add up to
+    long count = cells.length;
+    long least = count * (count + 1) / 2;
+    long most = count * (2L * size - count + 1) / 2;
+    if (count > size || total < least || total > most) {
+      throw new IllegalArgumentException(format("Cage %s can't add up to %s with different values from 1 to %s",
+        this, total, size));
+    }
+  }
+
+
+  /**
+   * Build, but don't post, the constraints for this cage
+   *
+   * @param model       the model in which constraints will be built
+   * @param grid        the grid, in the form of [row][column]
+   * @param consistency how hard an allDifferent should work to remove values, if the cage is too big for a table
+   * @return the constraints
+   */
+  List<Constraint> constraints(Model model, IntVar[][] grid, SudokuConfig.Consistency consistency) {
+    IntVar[] variables = Sudoku.getCells(grid, cells);
+    List<Constraint> constraints = new ArrayList<>(2);
+
+    int[][] table = table(grid.length, cells.length, total);
+    if (table == TOO_BIG) {
+      constraints.add(model.sum(variables, "=", total));
+      constraints.add(model.allDifferent(variables, consistency.chocoName()));
+    } else if (table.length == 0) {
+      // there's no way of filling it
+      constraints.add(model.falseConstraint());
+    } else {
+      constraints.add(model.table(variables, new Tuples(table, true), "CT+"));
+    }
+    return constraints;
+  }
+
+
+  @Override
+  public String toString() {
+    StringBuilder line = new StringBuilder().append(total).append(':');
+    for (int i = 0; i != cells.length; i++) {
+      line.append(i == 0 ? "" : ",").append(cells[i]);
+    }
+    return line.toString();
+  }
+
+
+  /**
+   * @return every way of filling a cage with different values from 1 to size that add up to the total, or
+   * {@link #TOO_BIG} if there are too many of them for a table
+   */
+  private static int[][] table(int size, int cellCount, int total) {
+    return TABLES.getUnchecked(Arrays.asList(size, cellCount, total));
+  }
+
+  private static int[][] buildTable(int size, int cellCount, int total) {
+    // first the sets of values, as the count of those is small enough to check before we go any further
+    List<int[]> sets = new ArrayList<>();
+    if (findSets(size, total, new int[cellCount], 0, 1, 0, sets, new int[]{MAX_STEPS}) < 0) {
+      return TOO_BIG;
+    }
+    long rows = sets.size();
+    for (int i = 2; i <= cellCount && rows <= MAX_TUPLES; i++) {
+      rows *= i;
+    }
+    if (rows > MAX_TUPLES) {
+      return TOO_BIG;
+    }
+
+    // and then every order of each set
+    List<int[]> tuples = new ArrayList<>();
+    for (int[] set : sets) {
+      permute(set, 0, tuples);
+    }
+    return tuples.toArray(new int[0][]);
+  }
+
+  /**
+   * Find every set of increasing values, from the given one up, that fills the rest of the cage. We give up once
+   * there are more sets than fit in a table, as the big cages of the big grids can have millions of them, or
+   * once we've run out of steps.
+   * <p>
+   * The values left to place can add up to anything from the lowest of them to the highest, so we only go down a
+   * branch while the total is in that range, which means there's at least one set at the end of it.
+   *
+   * @param steps how many more values we can try, which is counted down as we go
+   * @return the number of sets found, or -1 if we gave up
+   */
+  private static int findSets(int size, int total, int[] values, int position, int from, int sum,
+                              List<int[]> sets, int[] steps) {
+    if (position == values.length) {
+      if (sum == total) {
+        sets.add(values.clone());
+      }
+      return sets.size();
+    }
+    long left = values.length - position;
+    long least = sum + left * from + left * (left - 1) / 2;
+    long most = sum + left * size - left * (left - 1) / 2;
+    if (from + left - 1 > size || least > total || most < total) {
+      return sets.size();
+    }
+    for (int value = from; value <= size && sum + value <= total; value++) {
+      if (sets.size() > MAX_TUPLES || --steps[0] < 0) {
+        return -1;
+      }
+      values[position] = value;
+      if (findSets(size, total, values, position + 1, value + 1, sum + value, sets, steps) < 0) {
+        return -1;
+      }
+    }
+    return sets.size();
+  }
+
+  private static void permute(int[] values, int position, List<int[]> tuples) {
+    if (position == values.length) {
+      tuples.add(values.clone());
+      return;
+    }
+    for (int i = position; i != values.length; i++) {
+      swap(values, position, i);
+      permute(values, position + 1, tuples);
+      swap(values, position, i);
+    }
+  }
+
+  private static void swap(int[] values, int i, int j) {
+    int value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+}
@@ -0,0 +1,387 @@
+package com.sonalake.choco;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The canonical form of a 9x9 sudoku: the one puzzle that it, and every puzzle that's just a shuffled version of
+ * it, all map to. The shuffles are the ones that always turn a valid grid into another valid grid:
+ * <p>
+ * - relabelling the values (e.g. swapping every 1 and 7)
+ * - swapping rows within a band of three, or swapping whole bands
+ * - swapping columns within a stack of three, or swapping whole stacks
+ * - transposing the grid
+ * <p>
+ * The canonical form is the shuffle that gives the smallest grid, reading it in rows, where values are labelled
+ * in the order they first appear and unknowns count as bigger than any value. We find it by finding every
+ * transpose, row and column order that gives the smallest first row, and then building the rows up one at a
+ * time, only ever keeping the partial grids that are tied for the smallest so far.
+ * <p>
+ * The form also remembers the shuffle, so a solution of the canonical puzzle can be mapped back to a solution of
+ * this one.
+ */
+final class SudokuCanonicalForm {
+
+  private static final int SIZE = 9;
+  private static final int BAND = 3;
+
+  // unknowns sort after any value
+  private static final int UNKNOWN = SIZE + 1;
+
+  // if this many partial grids are tied we stop keeping more, which still gives a valid form for this puzzle,
+  // but maybe not the same one as its shuffled copies
+  private static final int MAX_TIED = 5000;
+
+  // every column order that keeps the stacks together
+  private static final int[][] COLUMN_ORDERS = columnOrders();
+
+  private final String key;
+  private final boolean transposed;
+  private final int[] rowOrder;
+  private final int[] columnOrder;
+  // the canonical label for each value, and the value for each canonical label
+  private final int[] labels;
+  private final int[] values;
+
+  private SudokuCanonicalForm(String key, boolean transposed, int[] rowOrder, int[] columnOrder, int[] labels) {
+    this.key = key;
+    this.transposed = transposed;
+    this.rowOrder = rowOrder;
+    this.columnOrder = columnOrder;
+    this.labels = labels;
+    this.values = new int[SIZE + 1];
+    for (int value = 1; value <= SIZE; value++) {
+      values[labels[value]] = value;
+    }
+  }
+
+
+  /**
+   * Work out the canonical form of a puzzle
+   *
+   * @param predefinedRows the predefined values of a 9x9 puzzle, 0 means unknown. See {@link #canForm(int[][])}
+   * @return the canonical form
+   */
+  static SudokuCanonicalForm of(int[][] predefinedRows) {
+    if (!canForm(predefinedRows)) {
+      throw new IllegalArgumentException("Canonical forms are only for 9x9 grids with no value repeated in a row "
+        + "or column");
+    }
+
+    StringBuilder key = new StringBuilder(SIZE * SIZE);
+    List<Partial> tied = firstRows(predefinedRows, key);
+    for (int row = 1; row != SIZE; row++) {
+      tied = nextRows(predefinedRows, tied, row, key);
+    }
+
+    // every grid that's left is the same, so any of them will do
+    Partial best = tied.get(0);
+    int[] labels = best.labels.clone();
+    int next = best.nextLabel;
+    for (int value = 1; value <= SIZE; value++) {
+      // the values that weren't given still need a label, which we give in order
+      if (labels[value] == 0) {
+        labels[value] = next++;
+      }
+    }
+    return new SudokuCanonicalForm(key.toString(), best.transposed, best.rows,
+      COLUMN_ORDERS[best.columnOrder], labels);
+  }
+
+
+  /**
+   * Check that a puzzle can have a canonical form. It needs to be 9x9, and can't have a value twice in the same
+   * row or column, as the best first row is picked on the assumption that all its values are different. A puzzle
+   * that does repeat a value has no solution anyway, so there's nothing lost by not caching it.
+   *
+   * @param predefinedRows the predefined values, 0 means unknown
+   * @return true if {@link #of(int[][])} can be used
+   */
+  static boolean canForm(int[][] predefinedRows) {
+    if (predefinedRows.length != SIZE) {
+      return false;
+    }
+    for (int i = 0; i != SIZE; i++) {
+      int inRow = 0;
+      int inColumn = 0;
+      for (int j = 0; j != SIZE; j++) {
+        int rowValue = 1 << predefinedRows[i][j];
+        int columnValue = 1 << predefinedRows[j][i];
+        // unknowns are bit 0, which we don't care about
+        if ((inRow & rowValue & ~1) != 0 || (inColumn & columnValue & ~1) != 0) {
+          return false;
+        }
+        inRow |= rowValue;
+        inColumn |= columnValue;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * @return the canonical puzzle, in the one-line format. Shuffled copies of the same puzzle have the same key
+   */
+  String key() {
+    return key;
+  }
+
+
+  /**
+   * Map a grid of this puzzle (e.g. its solution) into the canonical form
+   *
+   * @param grid the grid, in the form of [row][column]
+   * @return the canonical grid, in the form of [row][column]
+   */
+  int[][] toCanonical(int[][] grid) {
+    int[][] canonical = new int[SIZE][SIZE];
+    for (int row = 0; row != SIZE; row++) {
+      for (int col = 0; col != SIZE; col++) {
+        canonical[row][col] = labels[valueAt(grid, transposed, rowOrder[row], columnOrder[col])];
+      }
+    }
+    return canonical;
+  }
+
+
+  /**
+   * Map a canonical grid (e.g. the solution of the canonical puzzle) back to this puzzle
+   *
+   * @param canonical the canonical grid, in the form of [row][column]
+   * @param grid      where the grid for this puzzle is written, in the form of [row][column]
+   */
+  void fromCanonical(int[][] canonical, int[][] grid) {
+    for (int row = 0; row != SIZE; row++) {
+      for (int col = 0; col != SIZE; col++) {
+        int r = rowOrder[row];
+        int c = columnOrder[col];
+        if (transposed) {
+          grid[c][r] = values[canonical[row][col]];
+        } else {
+          grid[r][c] = values[canonical[row][col]];
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Find the first rows: the transposes, rows and column orders that give the smallest first row.
+   * <p>
+   * The values in the first row are all new, so they're always labelled 1, 2, 3... from left to right, and the
+   * smallest first row is the one that gets the most values to the left. So we can pick the best rows from how
+   * many values they have in each stack, and only then try every column order on those rows.
+   */
+  private static List<Partial> firstRows(int[][] puzzle, StringBuilder key) {
+    // find the best shape of first row, and the rows that can have it
+    int[] best = null;
+    List<int[]> bestRows = new ArrayList<>();
+    for (int t = 0; t != 2; t++) {
+      for (int row = 0; row != SIZE; row++) {
+        int[] shape = firstRowShape(puzzle, t == 1, row);
+        int comparison = best == null ? -1 : compare(shape, best);
+        if (comparison < 0) {
+          bestRows.clear();
+          best = shape;
+        }
+        if (comparison <= 0) {
+          bestRows.add(new int[]{t, row});
+        }
+      }
+    }
+
+    // and then every column order that gives that row that shape
+    List<Partial> tied = new ArrayList<>();
+    int[] candidate = new int[SIZE];
+    int[] labels = new int[SIZE + 1];
+    for (int[] bestRow : bestRows) {
+      boolean transposed = bestRow[0] == 1;
+      int row = bestRow[1];
+      for (int order = 0; order != COLUMN_ORDERS.length && tied.size() < MAX_TIED; order++) {
+        Arrays.fill(labels, 0);
+        int nextLabel = label(puzzle, transposed, row, COLUMN_ORDERS[order], labels, 1, candidate);
+        if (compare(candidate, best) == 0) {
+          int[] rows = new int[SIZE];
+          rows[0] = row;
+          tied.add(new Partial(transposed, order, rows, labels.clone(), nextLabel));
+        }
+      }
+    }
+
+    append(key, best);
+    return tied;
+  }
+
+  /**
+   * The smallest this row could be as the first row: the stacks with the most values go first, and the values
+   * go first within each stack
+   */
+  private static int[] firstRowShape(int[][] puzzle, boolean transposed, int row) {
+    int[] counts = new int[BAND];
+    for (int col = 0; col != SIZE; col++) {
+      if (valueAt(puzzle, transposed, row, col) != 0) {
+        counts[col / BAND]++;
+      }
+    }
+    Arrays.sort(counts);
+
+    int[] shape = new int[SIZE];
+    int nextLabel = 1;
+    for (int stack = 0; stack != BAND; stack++) {
+      int count = counts[BAND - 1 - stack];
+      for (int i = 0; i != BAND; i++) {
+        shape[stack * BAND + i] = i < count ? nextLabel++ : UNKNOWN;
+      }
+    }
+    return shape;
+  }
+
+
+  /**
+   * For each partial grid, try every row that can go next, and keep the ones that give the smallest grid
+   */
+  private static List<Partial> nextRows(int[][] puzzle, List<Partial> partials, int position, StringBuilder key) {
+    List<Partial> tied = new ArrayList<>();
+    int[] best = null;
+    int[] candidate = new int[SIZE];
+    int[] labels = new int[SIZE + 1];
+
+    for (Partial partial : partials) {
+      for (int row = 0; row != SIZE; row++) {
+        if (!partial.canPlace(row, position)) {
+          continue;
+        }
+
+        System.arraycopy(partial.labels, 0, labels, 0, labels.length);
+        int nextLabel = label(puzzle, partial.transposed, row, COLUMN_ORDERS[partial.columnOrder], labels,
+          partial.nextLabel, candidate);
+
+        int comparison = best == null ? -1 : compare(candidate, best);
+        if (comparison < 0) {
+          tied.clear();
+          best = candidate.clone();
+        }
+        if (comparison <= 0 && tied.size() < MAX_TIED) {
+          int[] rows = partial.rows.clone();
+          rows[position] = row;
+          tied.add(new Partial(partial.transposed, partial.columnOrder, rows, labels.clone(), nextLabel));
+        }
+      }
+    }
+
+    append(key, best);
+    return tied;
+  }
+
+
+  /**
+   * Label the values in a row of the puzzle, giving new labels to values we've not seen yet
+   *
+   * @return the next label to give out
+   */
+  private static int label(int[][] puzzle, boolean transposed, int row, int[] columnOrder, int[] labels,
+                           int nextLabel, int[] result) {
+    for (int col = 0; col != SIZE; col++) {
+      int value = valueAt(puzzle, transposed, row, columnOrder[col]);
+      if (value == 0) {
+        result[col] = UNKNOWN;
+      } else {
+        if (labels[value] == 0) {
+          labels[value] = nextLabel++;
+        }
+        result[col] = labels[value];
+      }
+    }
+    return nextLabel;
+  }
+
+  private static int valueAt(int[][] grid, boolean transposed, int row, int col) {
+    return transposed ? grid[col][row] : grid[row][col];
+  }
+
+  private static int compare(int[] a, int[] b) {
+    for (int i = 0; i != SIZE; i++) {
+      if (a[i] != b[i]) {
+        return a[i] < b[i] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private static void append(StringBuilder key, int[] row) {
+    for (int value : row) {
+      key.append(value == UNKNOWN ? '.' : (char) ('0' + value));
+    }
+  }
+
+
+  /**
+   * All 6 stack orders, times the 6 orders of the columns within each of the 3 stacks: 1296 in all
+   */
+  private static int[][] columnOrders() {
+    int[][] permutations = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+    List<int[]> orders = new ArrayList<>();
+    for (int[] stacks : permutations) {
+      for (int[] first : permutations) {
+        for (int[] second : permutations) {
+          for (int[] third : permutations) {
+            int[][] within = {first, second, third};
+            int[] order = new int[SIZE];
+            for (int stack = 0; stack != BAND; stack++) {
+              for (int i = 0; i != BAND; i++) {
+                order[stack * BAND + i] = stacks[stack] * BAND + within[stack][i];
+              }
+            }
+            orders.add(order);
+          }
+        }
+      }
+    }
+    return orders.toArray(new int[0][]);
+  }
+
+
+  /**
+   * A grid that's been built up to some row: which rows of the puzzle have been used, in what order, and how
+   * the values seen so far have been labelled
+   */
+  private static final class Partial {
+    private final boolean transposed;
+    private final int columnOrder;
+    private final int[] rows;
+    private final int[] labels;
+    private final int nextLabel;
+
+    private Partial(boolean transposed, int columnOrder, int[] rows, int[] labels, int nextLabel) {
+      this.transposed = transposed;
+      this.columnOrder = columnOrder;
+      this.rows = rows;
+      this.labels = labels;
+      this.nextLabel = nextLabel;
+    }
+
+    /**
+     * Rows have to stay in their bands: the first row of each band can be from any band we've not used, and
+     * the other two have to come from the same band as that first row
+     */
+    private boolean canPlace(int row, int position) {
+      for (int i = 0; i != position; i++) {
+        if (rows[i] == row) {
+          return false;
+        }
+      }
+
+      int band = row / BAND;
+      if (position % BAND != 0) {
+        return band == rows[position - position % BAND] / BAND;
+      }
+      for (int i = 0; i != position; i += BAND) {
+        if (rows[i] / BAND == band) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.constraints.nary.alldifferent.AllDifferent;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.strategy.AbstractStrategy;
+import org.chocosolver.solver.variables.IntVar;
+
+/**
+ * How a sudoku model is built. A config never changes once it's made, so the same one can be shared between
+ * threads; use the {@code with...} methods to get a copy with a different setting.
+ */
+final class SudokuConfig {
+
+  /**
+   * How hard the allDifferent constraints on each row / column / square should work to remove values. Stronger
+   * levels remove more values at each node, so there are fewer nodes, but each node costs more.
+   */
+  enum Consistency {
+    // let choco decide
+    DEFAULT(AllDifferent.DEFAULT),
+    // arc consistency: remove every value that can't be part of a solution (Regin's matching algorithm)
+    AC(AllDifferent.AC),
+    // bound consistency: only tighten the min and max of each domain
+    BC(AllDifferent.BC),
+    // forward checking: when a cell is fixed, remove its value from the others
+    FC(AllDifferent.FC),
+    // break it down into a not-equals constraint between every pair of cells
+    NEQS(AllDifferent.NEQS);
+
+    private final String chocoName;
+
+    Consistency(String chocoName) {
+      this.chocoName = chocoName;
+    }
+
+    /**
+     * @return the name choco uses for this consistency level
+     */
+    String chocoName() {
+      return chocoName;
+    }
+  }
+
+  /**
+   * How the search picks the next cell, and the value to try in it
+   */
+  enum Strategy {
+    // let choco decide
+    DEFAULT {
+      @Override
+      AbstractStrategy<IntVar> search(IntVar[] cells, long seed) {
+        return null;
+      }
+    },
+    // the cell with the smallest domain for the number of times its constraints have failed
+    DOM_WDEG {
+      @Override
+      AbstractStrategy<IntVar> search(IntVar[] cells, long seed) {
+        return Search.domOverWDegSearch(cells);
+      }
+    },
+    // the cell and value that have caused the most domain changes when they were tried before
+    ACTIVITY {
+      @Override
+      AbstractStrategy<IntVar> search(IntVar[] cells, long seed) {
+        return Search.activityBasedSearch(cells);
+      }
+
+      @Override
+      boolean perPuzzle() {
+        // it samples the activities when it starts, and restarts on its own based on them, neither of which
+        // happens again when the solver is reset, so on a reused model it can search forever
+        return true;
+      }
+    },
+    // the cell with the smallest domain, trying the smallest value first
+    MIN_DOM {
+      @Override
+      AbstractStrategy<IntVar> search(IntVar[] cells, long seed) {
+        return Search.minDomLBSearch(cells);
+      }
+    },
+    // the cell with the smallest domain, trying the biggest value first, and going back to the last cell that
+    // failed before anything else
+    LAST_CONFLICT {
+      @Override
+      AbstractStrategy<IntVar> search(IntVar[] cells, long seed) {
+        return Search.lastConflict(Search.minDomUBSearch(cells));
+      }
+    },
+    // a random cell and value
+    RANDOM {
+      @Override
+      AbstractStrategy<IntVar> search(IntVar[] cells, long seed) {
+        return Search.randomSearch(cells, seed);
+      }
+    };
+
+    /**
+     * @param cells every cell in the grid
+     * @param seed  the seed, for the strategies that use one
+     * @return the search, or null to keep choco's default
+     */
+    abstract AbstractStrategy<IntVar> search(IntVar[] cells, long seed);
+
+    /**
+     * @return true if a reused model needs a new search for every puzzle, rather than one that's kept
+     */
+    boolean perPuzzle() {
+      return false;
+    }
+  }
+
+  static final SudokuConfig DEFAULT = new SudokuConfig(Consistency.DEFAULT, true, Strategy.DEFAULT, false);
+
+  private final Consistency consistency;
+  private final boolean singles;
+  private final Strategy strategy;
+  private final boolean restarts;
+
+  private SudokuConfig(Consistency consistency, boolean singles, Strategy strategy, boolean restarts) {
+    this.consistency = consistency;
+    this.singles = singles;
+    this.strategy = strategy;
+    this.restarts = restarts;
+  }
+
+  /**
+   * @return how the allDifferent constraints propagate
+   */
+  Consistency consistency() {
+    return consistency;
+  }
+
+  /**
+   * @param consistency how the allDifferent constraints should propagate
+   * @return a copy of this config, with the given consistency
+   */
+  SudokuConfig withConsistency(Consistency consistency) {
+    return new SudokuConfig(consistency, singles, strategy, restarts);
+  }
+
+  /**
+   * @return true if the cells forced by naked and hidden singles are filled in before choco sees the puzzle
+   */
+  boolean singles() {
+    return singles;
+  }
+
+  /**
+   * @param singles true to fill in the forced cells with {@link SudokuSingles} before searching
+   * @return a copy of this config, with the singles pass turned on or off
+   */
+  SudokuConfig withSingles(boolean singles) {
+    return new SudokuConfig(consistency, singles, strategy, restarts);
+  }
+
+  /**
+   * @return how the search picks cells and values
+   */
+  Strategy strategy() {
+    return strategy;
+  }
+
+  /**
+   * @param strategy how the search should pick cells and values
+   * @return a copy of this config, with the given strategy
+   */
+  SudokuConfig withStrategy(Strategy strategy) {
+    return new SudokuConfig(consistency, singles, strategy, restarts);
+  }
+
+  /**
+   * @return true if the search restarts using the Luby sequence
+   */
+  boolean restarts() {
+    return restarts;
+  }
+
+  /**
+   * @param restarts true to restart the search using the Luby sequence, so a search that's gone down a bad
+   *                 branch early on gets another go
+   * @return a copy of this config, with restarts turned on or off
+   */
+  SudokuConfig withRestarts(boolean restarts) {
+    return new SudokuConfig(consistency, singles, strategy, restarts);
+  }
+
+  /**
+   * @return true if the search can go back to the top of the tree, either because of the restarts or because the
+   * strategy does it by itself (as activity based search does while it's sampling). Such a search can find the
+   * same solution twice, so it can't be used to check uniqueness
+   */
+  boolean searchRestarts() {
+    return restarts || strategy == Strategy.ACTIVITY;
+  }
+
+  @Override
+  public String toString() {
+    return "consistency=" + consistency + ", singles=" + singles + ", strategy=" + strategy
+      + (restarts ? "+restarts" : "");
+  }
+}
@@ -0,0 +1,476 @@
+package com.sonalake.choco;
+
+import org.chocosolver.cutoffseq.ICutoffStrategy;
+import org.chocosolver.cutoffseq.LubyCutoffStrategy;
+import org.chocosolver.memory.IEnvironment;
+import org.chocosolver.solver.Cause;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.strategy.AbstractStrategy;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.util.criteria.Criterion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * A sudoku model that is built once and then reused for puzzle after puzzle.
+ * <p>
+ * The variables and the row / column / square constraints are the same for every puzzle, only the predefined
+ * values change. So rather than building a new model for each puzzle we build one with every cell unknown, and
+ * for each puzzle we:
+ * <p>
+ * - pop the world of the previous puzzle, which puts every domain back the way it was
+ * - push a new world onto the model's environment
+ * - instantiate the predefined cells in that world
+ * - solve
+ * <p>
+ * The previous puzzle is only cleared when the next one starts, so the solver's statistics are still there to
+ * be read after a solve.
+ * <p>
+ * Unless the config turns it off, each puzzle first goes through {@link SudokuSingles}, and only what's left
+ * after that is given to choco. If the singles solve the whole puzzle then choco isn't run at all, and the
+ * solver's statistics are all zero.
+ * <p>
+ * An engine can also solve the {@link SudokuVariant variants}. A killer's cages are posted along with the
+ * predefined values, before the puzzle's world is pushed, and are removed again when the puzzle is cleared. An
+ * engine for jigsaws is built without the squares, and each puzzle's regions are posted in the same way as its
+ * cages, so one engine can solve jigsaws of any shape.
+ * <p>
+ * An engine is not thread safe, so use one per thread.
+ */
+class SudokuEngine {
+
+  // the shortest run between restarts, in fails
+  private static final long RESTART_SCALE = 64;
+
+  // the seed for the strategies that use one
+  private static final long SEED = 0;
+
+  /**
+   * How many solutions a puzzle has
+   */
+  enum Uniqueness {
+    // exactly one, which is what a published puzzle should have
+    UNIQUE,
+    // two or more
+    MULTIPLE,
+    // none at all
+    NONE
+  }
+
+  private final Model model;
+  private final Solver solver;
+  private final IEnvironment environment;
+  private final IntVar[][] grid;
+  private final int size;
+  private final boolean singles;
+  private final boolean searchRestarts;
+  private final SudokuConfig.Strategy strategy;
+  private final SudokuConfig.Consistency consistency;
+  // true if the regions are posted with each puzzle, rather than being the squares for every puzzle
+  private final boolean jigsaw;
+  private final SudokuVariant classic;
+  // the constraints posted for the current puzzle's variant, which are removed again when it's cleared
+  private final List<Constraint> variantConstraints = new ArrayList<>();
+
+  // true if there's a puzzle's world on the environment that needs to be popped
+  private boolean loaded;
+  // true if the last puzzle was solved by the singles alone, so there's no search to carry on with
+  private boolean solvedBySingles;
+  // null unless the search restarts, in which case the sequence starts again for every puzzle
+  private LubyRestarts restarts;
+
+  /**
+   * @param size the number of cells in a row, 9 for a standard sudoku
+   */
+  SudokuEngine(int size) {
+    this(size, SudokuConfig.DEFAULT);
+  }
+
+  /**
+   * @param size   the number of cells in a row, 9 for a standard sudoku
+   * @param config how the model should be built
+   */
+  SudokuEngine(int size, SudokuConfig config) {
+    this(size, config, false);
+  }
+
+  /**
+   * @param size   the number of cells in a row, 9 for a standard sudoku
+   * @param config how the model should be built
+   * @param jigsaw if true, the model is built without the squares, and the regions of each puzzle are posted
+   *               with it; so this engine can solve puzzles with any regions, and only does so slightly slower
+   */
+  SudokuEngine(int size, SudokuConfig config, boolean jigsaw) {
+    this.size = SudokuLayout.of(size).size();
+    this.singles = config.singles();
+    this.searchRestarts = config.searchRestarts();
+    this.strategy = config.strategy();
+    this.consistency = config.consistency();
+    this.jigsaw = jigsaw;
+    this.classic = SudokuVariant.classic(size);
+    model = new Model("sudoku");
+    grid = Sudoku.buildGrid(model, new int[size][size]);
+    if (jigsaw) {
+      Sudoku.applyLineConstraints(model, grid, consistency);
+    } else {
+      Sudoku.applyConnectionConstraints(model, grid, consistency);
+    }
+    solver = model.getSolver();
+    environment = model.getEnvironment();
+
+    AbstractStrategy<IntVar> search = strategy.search(cells(), SEED);
+    if (search != null) {
+      solver.setSearch(search);
+    }
+    if (config.restarts()) {
+      restarts = new LubyRestarts(RESTART_SCALE);
+      solver.setRestarts(limit -> solver.getFailCount() >= limit, restarts, Integer.MAX_VALUE);
+    }
+  }
+
+
+  /**
+   * Solve the given puzzle
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the engine
+   * @param solution       where the solution will be written, in the form of [row][column]
+   * @return true if there was a solution, false otherwise
+   */
+  boolean solve(int[][] predefinedRows, int[][] solution) {
+    return solve(predefinedRows, solution, null);
+  }
+
+
+  /**
+   * Solve the given puzzle, giving up if the stop criterion is met before the search is finished.
+   * <p>
+   * The criterion is checked at every step of the search, so it needs to be cheap. Use {@link #stopped()} to
+   * tell a search that gave up from a puzzle with no solution.
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the engine
+   * @param solution       where the solution will be written, in the form of [row][column]
+   * @param stop           when to give up, or null to search for as long as it takes
+   * @return true if there was a solution, false if there wasn't one or the search gave up
+   */
+  boolean solve(int[][] predefinedRows, int[][] solution, Criterion stop) {
+    return solve(predefinedRows, classic, solution, stop);
+  }
+
+
+  /**
+   * Solve the given puzzle of a variant
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the engine
+   * @param variant        the regions and cages of the puzzle. Only an engine for jigsaws can take regions that
+   *                       aren't the squares
+   * @param solution       where the solution will be written, in the form of [row][column]
+   * @return true if there was a solution, false otherwise
+   */
+  boolean solve(int[][] predefinedRows, SudokuVariant variant, int[][] solution) {
+    return solve(predefinedRows, variant, solution, null);
+  }
+
+
+  /**
+   * Solve the given puzzle of a variant, giving up if the stop criterion is met before the search is finished
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the engine
+   * @param variant        the regions and cages of the puzzle. Only an engine for jigsaws can take regions that
+   *                       aren't the squares
+   * @param solution       where the solution will be written, in the form of [row][column]
+   * @param stop           when to give up, or null to search for as long as it takes
+   * @return true if there was a solution, false if there wasn't one or the search gave up
+   */
+  boolean solve(int[][] predefinedRows, SudokuVariant variant, int[][] solution, Criterion stop) {
+    checkVariant(variant);
+    solvedBySingles = false;
+    if (singles) {
+      // fill in what we can without choco, and then only load what's left
+      for (int row = 0; row != size; row++) {
+        System.arraycopy(predefinedRows[row], 0, solution[row], 0, size);
+      }
+      SudokuSingles.Outcome outcome = SudokuSingles.fill(solution, variant.layout());
+      if (outcome != SudokuSingles.Outcome.PARTIAL) {
+        // there's nothing for choco to do, but the last puzzle still needs clearing so its statistics go
+        clear();
+        // the singles don't know about cages, so a filled grid still has to add up
+        solvedBySingles = outcome == SudokuSingles.Outcome.SOLVED && addsUp(solution, variant);
+        return solvedBySingles;
+      }
+      predefinedRows = solution;
+    }
+
+    if (!load(predefinedRows, variant)) {
+      return false;
+    }
+    // this has to go after the load, as clearing the last puzzle removes the stop criteria
+    if (stop != null) {
+      solver.addStopCriterion(stop);
+    }
+
+    boolean solved = solver.solve();
+    if (solved) {
+      for (int row = 0; row != size; row++) {
+        for (int col = 0; col != size; col++) {
+          solution[row][col] = grid[row][col].getValue();
+        }
+      }
+    }
+    return solved;
+  }
+
+
+  /**
+   * Check if the given puzzle has exactly one solution.
+   * <p>
+   * This is the normal solve, and then if there is a solution we carry on the same search looking for a second
+   * one. We stop as soon as it's found (or the search runs out), so we never look for more than two.
+   * <p>
+   * A search that restarts could find the first solution again, so this needs a config without restarts.
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the engine
+   * @param solution       where the first solution will be written, in the form of [row][column]
+   * @return how many solutions there are
+   */
+  Uniqueness checkUniqueness(int[][] predefinedRows, int[][] solution) {
+    return checkUniqueness(predefinedRows, classic, solution);
+  }
+
+
+  /**
+   * Check if the given puzzle of a variant has exactly one solution, in the same way as for a classic puzzle
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the engine
+   * @param variant        the regions and cages of the puzzle
+   * @param solution       where the first solution will be written, in the form of [row][column]
+   * @return how many solutions there are
+   */
+  Uniqueness checkUniqueness(int[][] predefinedRows, SudokuVariant variant, int[][] solution) {
+    if (searchRestarts) {
+      throw new IllegalStateException("Uniqueness can't be checked with a search that restarts");
+    }
+    if (!solve(predefinedRows, variant, solution)) {
+      return Uniqueness.NONE;
+    }
+    if (solvedBySingles) {
+      // every cell was forced, so there's no other way to fill them
+      return Uniqueness.UNIQUE;
+    }
+    return solver.solve() ? Uniqueness.MULTIPLE : Uniqueness.UNIQUE;
+  }
+
+
+  /**
+   * Check if the given puzzle has a solution where one cell does not have the given value.
+   * <p>
+   * This is a cheap way of keeping a puzzle unique while removing its predefined values: if the puzzle was
+   * unique before the cell was cleared, then any new solution must have a different value in that cell. So
+   * there's only one search to do, and it's usually a quick proof that there isn't one.
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the engine
+   * @param row            the row of the cell
+   * @param col            the column of the cell
+   * @param value          the value that the cell can't have
+   * @return true if there is a solution without the value in that cell
+   */
+  boolean solveExcluding(int[][] predefinedRows, int row, int col, int value) {
+    if (!load(predefinedRows, classic)) {
+      return false;
+    }
+
+    try {
+      grid[row][col].removeValue(value, Cause.Null);
+    } catch (ContradictionException e) {
+      solver.getEngine().flush();
+      return false;
+    }
+    return solver.solve();
+  }
+
+
+  /**
+   * @return true if the last search gave up because its stop criterion was met
+   */
+  boolean stopped() {
+    return solver.isStopCriterionMet();
+  }
+
+
+  /**
+   * @return every cell in the grid, going in rows
+   */
+  private IntVar[] cells() {
+    IntVar[] cells = new IntVar[size * size];
+    for (int row = 0; row != size; row++) {
+      System.arraycopy(grid[row], 0, cells, row * size, size);
+    }
+    return cells;
+  }
+
+
+  /**
+   * @return how hard the last puzzle was, from the work the solver did on it
+   */
+  SudokuGrade grade() {
+    return SudokuGrade.of(solver);
+  }
+
+
+  /**
+   * @return the solver, whose statistics are for the last puzzle that was solved
+   */
+  Solver getSolver() {
+    return solver;
+  }
+
+
+  /**
+   * Check the variant is one this engine can solve
+   */
+  private void checkVariant(SudokuVariant variant) {
+    if (variant.layout().size() != size) {
+      throw new IllegalArgumentException(format("A %sx%s puzzle can't be solved by a %sx%s engine",
+        variant.layout().size(), variant.layout().size(), size, size));
+    }
+    if (!jigsaw && !variant.layout().isStandard()) {
+      throw new IllegalArgumentException("Jigsaw regions need an engine that's built for jigsaws");
+    }
+  }
+
+
+  /**
+   * @return true if every cage in the variant adds up to its total in the filled grid
+   */
+  private boolean addsUp(int[][] filled, SudokuVariant variant) {
+    for (SudokuCage cage : variant.cages()) {
+      int[] cells = cage.cells();
+      int sum = 0;
+      long values = 0;
+      for (int cell : cells) {
+        int value = filled[cell / size][cell % size];
+        sum += value;
+        values |= 1L << (value - 1);
+      }
+      // the values have to be different too
+      if (sum != cage.total() || Long.bitCount(values) != cells.length) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Clear the last puzzle, post the constraints of this one's variant, and instantiate its predefined values
+   * in a new world
+   *
+   * @return false if the predefined values contradict each other
+   */
+  private boolean load(int[][] predefinedRows, SudokuVariant variant) {
+    clear();
+    if (restarts != null) {
+      restarts.reset();
+    }
+
+    // these are posted outside of the puzzle's world, and clearing the puzzle takes them away again
+    if (jigsaw) {
+      variantConstraints.addAll(Sudoku.regionConstraints(model, grid, variant.layout(), consistency));
+    }
+    for (SudokuCage cage : variant.cages()) {
+      variantConstraints.addAll(cage.constraints(model, grid, consistency));
+    }
+    for (Constraint constraint : variantConstraints) {
+      constraint.post();
+    }
+    if (!variantConstraints.isEmpty() || strategy.perPuzzle()) {
+      // a search like dom/wdeg weights the constraints that fail, and the weights it learnt on the last puzzle's
+      // cages would only lead it astray on this one's, as well as being kept for every constraint it ever saw
+      newSearch();
+    }
+
+    environment.worldPush();
+    loaded = true;
+    return instantiate(predefinedRows);
+  }
+
+
+  /**
+   * Start the search again from scratch, forgetting anything it learnt from the puzzles before
+   */
+  private void newSearch() {
+    // setting the search takes the old one away first, which unplugs anything it added to the solver
+    AbstractStrategy<IntVar> search = strategy.search(cells(), SEED);
+    solver.setSearch(search != null ? search : Search.defaultSearch(model));
+  }
+
+
+  /**
+   * Put the model back to how it was before the last puzzle
+   */
+  private void clear() {
+    // this resets the statistics, and pops back to the world in which we instantiated the predefined values
+    solver.reset();
+    if (loaded) {
+      environment.worldPop();
+      loaded = false;
+    }
+    if (!variantConstraints.isEmpty()) {
+      model.unpost(variantConstraints.toArray(new Constraint[0]));
+      variantConstraints.clear();
+    }
+  }
+
+
+  /**
+   * Fix the predefined values in the current world
+   *
+   * @return false if the predefined values contradict each other
+   */
+  private boolean instantiate(int[][] predefinedRows) {
+    try {
+      for (int row = 0; row != size; row++) {
+        for (int col = 0; col != size; col++) {
+          int value = predefinedRows[row][col];
+          if (value > 0) {
+            grid[row][col].instantiateTo(value, Cause.Null);
+          }
+        }
+      }
+      return true;
+    } catch (ContradictionException e) {
+      // forget about anything that was scheduled before the contradiction
+      solver.getEngine().flush();
+      return false;
+    }
+  }
+
+
+  /**
+   * The Luby sequence of restart limits, which choco's own version can't start again from the beginning
+   */
+  private static final class LubyRestarts implements ICutoffStrategy {
+    private final long scale;
+    private LubyCutoffStrategy sequence;
+
+    private LubyRestarts(long scale) {
+      this.scale = scale;
+      reset();
+    }
+
+    private void reset() {
+      sequence = new LubyCutoffStrategy(scale);
+    }
+
+    @Override
+    public long getNextCutoff() {
+      return sequence.getNextCutoff();
+    }
+  }
+}
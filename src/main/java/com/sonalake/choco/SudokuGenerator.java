@@ -0,0 +1,305 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.selectors.values.IntDomainRandom;
+import org.chocosolver.solver.search.strategy.selectors.variables.FirstFail;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+
+/**
+ * Generates new sudoku puzzles, each with a single solution.
+ * <p>
+ * For each puzzle we:
+ * <p>
+ * - build the usual model with every cell unknown, and solve it with a random value order to get a random full
+ * grid
+ * - go through the cells in a random order, clearing each one as long as the puzzle still has a single solution
+ * - stop once we're down to the fewest givens we want, or when no more cells can be cleared
+ * <p>
+ * If we can't get down to the most givens we want, we start again with a new full grid, up to
+ * {@link #MAX_ATTEMPTS} times. A range of givens that no puzzle of the size can have is refused up front, as we'd
+ * never get there.
+ * <p>
+ * Puzzles are generated in parallel, but each one only depends on the seed and its position in the output, so
+ * the same seed always gives the same puzzles in the same order, whatever the number of threads.
+ * <p>
+ * Usage: {@code SudokuGenerator <count> <output file> [options]}, where the options are:
+ * <p>
+ * - {@code --seed=N}: the seed, 0 by default
+ * - {@code --givens=MIN-MAX}: how many givens each puzzle should have, by default 17-30 for 9x9, and for other
+ * sizes the fewest they can have up to half the cells
+ * - {@code --size=N}: the size of the grid, 9 by default
+ * - {@code --threads=N}: how many puzzles to generate at once, by default one per core
+ */
+public class SudokuGenerator {
+
+  // how many puzzles can be waiting or in flight for each worker thread
+  private static final int PUZZLES_PER_THREAD = 4;
+
+  // spreads out the seeds for each puzzle
+  private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+  // how many full grids we try for each puzzle before giving up on getting down to the most givens we want.
+  // Clearing cells as we do usually leaves 22-28 givens on a 9x9 grid, so if this many don't get there, more
+  // probably won't either
+  static final int MAX_ATTEMPTS = 1000;
+
+  private final int size;
+  private final int minGivens;
+  private final int maxGivens;
+  private final long seed;
+  private final ThreadLocal<SudokuEngine> engines;
+  private final AtomicLong attempts = new AtomicLong();
+
+  /**
+   * @param size      the size of the grid
+   * @param minGivens the fewest predefined values a puzzle should have
+   * @param maxGivens the most predefined values a puzzle should have
+   * @param seed      the seed for all the puzzles
+   */
+  SudokuGenerator(int size, int minGivens, int maxGivens, long seed) {
+    if (minGivens > maxGivens || maxGivens > size * size) {
+      throw new IllegalArgumentException(format("Can't have between %s and %s givens", minGivens, maxGivens));
+    }
+    if (maxGivens < fewestGivens(size)) {
+      throw new IllegalArgumentException(format("A %sx%s puzzle with a single solution needs at least %s givens, "
+        + "so can't have between %s and %s", size, size, fewestGivens(size), minGivens, maxGivens));
+    }
+    this.size = SudokuLayout.of(size).size();
+    this.minGivens = minGivens;
+    this.maxGivens = maxGivens;
+    this.seed = seed;
+    // the uniqueness checks are on nearly full grids, where the cheapest propagation is the fastest
+    SudokuConfig config = SudokuConfig.DEFAULT.withConsistency(SudokuConfig.Consistency.FC);
+    this.engines = ThreadLocal.withInitial(() -> new SudokuEngine(this.size, config));
+  }
+
+  /**
+   * The fewest givens a puzzle of this size can have and still have a single solution, as far as anyone has
+   * found. For 9x9 it's been proven that there's no puzzle with 16. For other sizes we only know that all but one
+   * of the values have to be there somewhere, or the two that aren't could be swapped in any solution.
+   *
+   * @param size the size of the grid
+   * @return the fewest givens
+   */
+  static int fewestGivens(int size) {
+    if (size == 4) {
+      return 4;
+    } else if (size == 9) {
+      return 17;
+    } else if (size == 16) {
+      // the fewest anyone has found, though not proven
+      return 55;
+    }
+    return size - 1;
+  }
+
+  static public void main(String... args) throws IOException, InterruptedException, ExecutionException {
+    List<String> arguments = new ArrayList<>();
+    long seed = 0;
+    int minGivens = -1;
+    int maxGivens = -1;
+    int size = 9;
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (String arg : args) {
+      String value = arg.substring(arg.indexOf('=') + 1);
+      if (arg.startsWith("--seed=")) {
+        seed = Long.parseLong(value);
+      } else if (arg.startsWith("--givens=")) {
+        minGivens = Integer.parseInt(value.substring(0, value.indexOf('-')));
+        maxGivens = Integer.parseInt(value.substring(value.indexOf('-') + 1));
+      } else if (arg.startsWith("--size=")) {
+        size = Integer.parseInt(value);
+      } else if (arg.startsWith("--threads=")) {
+        threads = Integer.parseInt(value);
+      } else if (arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unknown option: " + arg);
+      } else {
+        arguments.add(arg);
+      }
+    }
+
+    if (arguments.size() < 2) {
+      System.err.println("Usage: SudokuGenerator <count> <output file> [--seed=0] [--givens=MIN-MAX] [--size=9] "
+        + "[--threads=N]");
+      return;
+    }
+
+    // by default, as few givens as the size can have, up to 30 on a 9x9 grid. We don't know how far clearing
+    // cells gets on the other sizes, so they're allowed up to half the cells
+    if (minGivens < 0) {
+      minGivens = fewestGivens(size);
+      maxGivens = Math.max(minGivens, size == 9 ? 30 : size * size / 2);
+    }
+
+    int count = Integer.parseInt(arguments.get(0));
+    SudokuGenerator generator = new SudokuGenerator(size, minGivens, maxGivens, seed);
+
+    long start = System.nanoTime();
+    try (SudokuWriter writer = new SudokuWriter(FileChannel.open(Paths.get(arguments.get(1)),
+      StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+      generator.generate(count, threads, writer);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.println(format("Generated %s puzzles (%s full grids) in %.3fs using %s threads",
+      count, generator.attempts.get(), seconds, threads));
+    System.out.println(format("\tthroughput: %.1f puzzles/s", count / seconds));
+  }
+
+
+  /**
+   * Generate puzzles, and write them out one per line.
+   * <p>
+   * As with the batch solver we only let a few puzzles per thread be in flight at once, so the output is in
+   * order and the memory use stays flat however many we make.
+   *
+   * @param count   how many puzzles to make
+   * @param threads how many to make at once
+   * @param writer  where they're written
+   */
+  void generate(int count, int threads, SudokuWriter writer) throws IOException, InterruptedException,
+    ExecutionException {
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    Deque<Future<int[][]>> inFlight = new ArrayDeque<>();
+    try {
+      for (int i = 0; i != count; i++) {
+        long puzzleSeed = seed + i * SEED_STEP;
+        inFlight.addLast(workers.submit(() -> generate(puzzleSeed)));
+
+        if (inFlight.size() >= threads * PUZZLES_PER_THREAD) {
+          write(writer, inFlight.removeFirst().get());
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        write(writer, inFlight.removeFirst().get());
+      }
+    } finally {
+      workers.shutdownNow();
+      workers.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+
+  /**
+   * Generate a single puzzle
+   *
+   * @param puzzleSeed the seed for this puzzle
+   * @return the predefined values, in the form of [row][column], with 0 for unknowns
+   * @throws IllegalStateException if none of the {@link #MAX_ATTEMPTS} full grids could be cleared down to the
+   *                               most givens we want
+   */
+  int[][] generate(long puzzleSeed) {
+    Random random = new Random(puzzleSeed);
+    int fewest = Integer.MAX_VALUE;
+    for (int attempt = 0; attempt != MAX_ATTEMPTS; attempt++) {
+      attempts.incrementAndGet();
+      int[][] puzzle = fullGrid(random.nextLong());
+      int givens = removeGivens(puzzle, random);
+      if (givens <= maxGivens) {
+        return puzzle;
+      }
+      fewest = Math.min(fewest, givens);
+    }
+    throw new IllegalStateException(format("Couldn't get a %sx%s puzzle down to %s givens in %s full grids, the "
+      + "fewest was %s; try allowing more givens", size, size, maxGivens, MAX_ATTEMPTS, fewest));
+  }
+
+
+  /**
+   * Make a random full grid, by solving a grid of unknowns with a random value order
+   */
+  private int[][] fullGrid(long gridSeed) {
+    Model model = new Model("sudoku generator");
+    IntVar[][] grid = Sudoku.buildGrid(model, new int[size][size]);
+    Sudoku.applyConnectionConstraints(model, grid);
+
+    IntVar[] cells = new IntVar[size * size];
+    for (int row = 0; row != size; row++) {
+      System.arraycopy(grid[row], 0, cells, row * size, size);
+    }
+
+    // the smallest domain first, so there's little backtracking, but a random value each time
+    Solver solver = model.getSolver();
+    solver.setSearch(Search.intVarSearch(new FirstFail(model), new IntDomainRandom(gridSeed), cells));
+    solver.solve();
+
+    int[][] values = new int[size][size];
+    for (int row = 0; row != size; row++) {
+      for (int col = 0; col != size; col++) {
+        values[row][col] = grid[row][col].getValue();
+      }
+    }
+    return values;
+  }
+
+
+  /**
+   * Clear cells from the puzzle, for as long as it still has a single solution
+   *
+   * @param puzzle the puzzle, this is changed in place
+   * @param random the source of the order in which cells are tried
+   * @return how many givens are left
+   */
+  private int removeGivens(int[][] puzzle, Random random) {
+    SudokuEngine engine = engines.get();
+
+    // go through the cells in a random order
+    int[] cells = new int[size * size];
+    for (int i = 0; i != cells.length; i++) {
+      cells[i] = i;
+    }
+    for (int i = cells.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = cells[i];
+      cells[i] = cells[j];
+      cells[j] = swap;
+    }
+
+    int givens = cells.length;
+    for (int cell : cells) {
+      if (givens <= minGivens) {
+        break;
+      }
+
+      int row = cell / size;
+      int col = cell % size;
+      int value = puzzle[row][col];
+      puzzle[row][col] = 0;
+
+      // the puzzle was unique before we cleared this cell, so it's still unique unless there's a solution
+      // with a different value here
+      if (engine.solveExcluding(puzzle, row, col, value)) {
+        puzzle[row][col] = value;
+      } else {
+        givens--;
+      }
+    }
+    return givens;
+  }
+
+
+  private static void write(SudokuWriter writer, int[][] puzzle) throws IOException {
+    writer.write(puzzle);
+    writer.endLine();
+  }
+}
@@ -0,0 +1,131 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Solver;
+
+import static java.lang.String.format;
+
+/**
+ * How hard a sudoku was to solve, going by how much work the solver had to do.
+ * <p>
+ * This is read straight from the solver's counters once it's finished, so it costs next to nothing on top of the
+ * solve itself. The tiers are based on the number of fails, and were picked with the AC consistency level in
+ * mind; weaker levels fail more often on the same puzzle, so will grade it harder.
+ */
+final class SudokuGrade {
+
+  /**
+   * How hard a puzzle is
+   */
+  enum Tier {
+    // solved by propagation alone, without ever having to guess
+    EASY,
+    // a few wrong guesses
+    MEDIUM,
+    // a lot of wrong guesses
+    HARD,
+    // the likes of the "world's hardest sudoku"
+    EXTREME;
+
+    // the most fails for each tier, the last one has no limit
+    private static final long[] MAX_FAILS = {0, 10, 100};
+
+    static Tier forFails(long fails) {
+      Tier[] tiers = values();
+      for (int i = 0; i != MAX_FAILS.length; i++) {
+        if (fails <= MAX_FAILS[i]) {
+          return tiers[i];
+        }
+      }
+      return EXTREME;
+    }
+  }
+
+  private final long nodes;
+  private final long backtracks;
+  private final long fails;
+  private final long propagations;
+  private final long nanos;
+  private final long maxDepth;
+  private final Tier tier;
+
+  private SudokuGrade(long nodes, long backtracks, long fails, long propagations, long nanos, long maxDepth) {
+    this.nodes = nodes;
+    this.backtracks = backtracks;
+    this.fails = fails;
+    this.propagations = propagations;
+    this.nanos = nanos;
+    this.maxDepth = maxDepth;
+    this.tier = Tier.forFails(fails);
+  }
+
+  /**
+   * Grade the puzzle that the solver has just finished with
+   *
+   * @param solver the solver
+   * @return the grade
+   */
+  static SudokuGrade of(Solver solver) {
+    return new SudokuGrade(
+      solver.getNodeCount(),
+      solver.getBackTrackCount(),
+      solver.getFailCount(),
+      solver.getMeasures().getFixpointCount(),
+      solver.getTimeCountInNanoSeconds(),
+      solver.getMaxDepth());
+  }
+
+  /**
+   * @return how many nodes were opened in the search tree
+   */
+  long nodes() {
+    return nodes;
+  }
+
+  /**
+   * @return how many times the search went back up the tree
+   */
+  long backtracks() {
+    return backtracks;
+  }
+
+  /**
+   * @return how many times a guess led to a contradiction
+   */
+  long fails() {
+    return fails;
+  }
+
+  /**
+   * @return how many times propagation was run to a fix point
+   */
+  long propagations() {
+    return propagations;
+  }
+
+  /**
+   * @return how long the search took, in nanoseconds
+   */
+  long nanos() {
+    return nanos;
+  }
+
+  /**
+   * @return the deepest the search got
+   */
+  long maxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * @return how hard the puzzle is
+   */
+  Tier tier() {
+    return tier;
+  }
+
+  @Override
+  public String toString() {
+    return format("%s (nodes=%s, backtracks=%s, fails=%s, propagations=%s, time=%.3fms, maxDepth=%s)",
+      tier, nodes, backtracks, fails, propagations, nanos / 1e6, maxDepth);
+  }
+}
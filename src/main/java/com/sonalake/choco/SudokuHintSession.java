@@ -0,0 +1,220 @@
+package com.sonalake.choco;
+
+import org.chocosolver.memory.IEnvironment;
+import org.chocosolver.solver.Cause;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Hints for a player working through a single puzzle: after each move, which cell is now forced.
+ * <p>
+ * The model is built once, when the session starts, and is then kept for as long as the player is on the
+ * puzzle. Each placement is made in a new world, and we only ever propagate, never search, so a hint is just
+ * the constraints catching up with the latest move. That's far cheaper than building and solving a new model for
+ * every move, and it only ever suggests cells the player could have worked out from what's on the grid.
+ * <p>
+ * The allDifferent constraints are arc consistent, so more cells are forced than the naked and hidden singles
+ * of {@link SudokuSingles} would find. Erasing a placement pops back to the world before it, and puts back the
+ * ones made after it.
+ * <p>
+ * A session is not thread safe, so the player's moves need to come in one at a time.
+ */
+final class SudokuHintSession {
+
+  private final Model model;
+  private final Solver solver;
+  private final IEnvironment environment;
+  private final IntVar[][] grid;
+  private final int size;
+
+  // what the player can see: the predefined values and the placements, with 0 for an empty cell
+  private final int[][] filled;
+  // the placements, in the order they were made, with a world for each
+  private final List<Hint> placements = new ArrayList<>();
+  // false if the predefined values contradict each other, in which case there's nothing to hint
+  private final boolean consistent;
+
+  /**
+   * @param predefinedRows the predefined values, 0 means unknown
+   */
+  SudokuHintSession(int[][] predefinedRows) {
+    this(predefinedRows, SudokuVariant.classic(predefinedRows.length));
+  }
+
+  /**
+   * @param predefinedRows the predefined values, 0 means unknown
+   * @param variant        the regions and cages of the puzzle
+   */
+  SudokuHintSession(int[][] predefinedRows, SudokuVariant variant) {
+    SudokuConfig.Consistency consistency = SudokuConfig.Consistency.AC;
+    size = predefinedRows.length;
+    model = new Model("sudoku hints");
+    grid = Sudoku.buildGrid(model, predefinedRows);
+    Sudoku.applyConnectionConstraints(model, grid, variant.layout(), consistency);
+    for (SudokuCage cage : variant.cages()) {
+      for (Constraint constraint : cage.constraints(model, grid, consistency)) {
+        constraint.post();
+      }
+    }
+    solver = model.getSolver();
+    environment = model.getEnvironment();
+
+    filled = new int[size][];
+    for (int row = 0; row != size; row++) {
+      filled[row] = predefinedRows[row].clone();
+    }
+    consistent = propagate();
+  }
+
+
+  /**
+   * Fill a cell, as the player just did
+   *
+   * @param row   the row of the cell
+   * @param col   the column of the cell
+   * @param value the value the player put in it
+   * @return true if the placement was made, or false if the constraints show it can't be right, in which case
+   * the session is left as it was
+   */
+  boolean place(int row, int col, int value) {
+    if (filled[row][col] != 0) {
+      throw new IllegalArgumentException(format("Cell [%s.%s] is already filled", row, col));
+    }
+    if (!consistent) {
+      return false;
+    }
+
+    environment.worldPush();
+    try {
+      grid[row][col].instantiateTo(value, Cause.Null);
+      solver.propagate();
+    } catch (ContradictionException e) {
+      // forget about anything that was scheduled before the contradiction, and the world it was in
+      solver.getEngine().flush();
+      environment.worldPop();
+      return false;
+    }
+    placements.add(new Hint(row, col, value));
+    filled[row][col] = value;
+    return true;
+  }
+
+
+  /**
+   * Empty a cell the player had filled
+   *
+   * @param row the row of the cell
+   * @param col the column of the cell
+   */
+  void erase(int row, int col) {
+    int index = placements.size() - 1;
+    while (index >= 0 && (placements.get(index).row != row || placements.get(index).col != col)) {
+      index--;
+    }
+    if (index < 0) {
+      throw new IllegalArgumentException(format("Cell [%s.%s] wasn't filled by the player", row, col));
+    }
+
+    // go back to before the placement, and then make the ones that came after it again. Taking a value away
+    // only ever leaves more values in the other cells, so none of these can fail
+    List<Hint> later = new ArrayList<>(placements.subList(index + 1, placements.size()));
+    for (int i = placements.size() - 1; i >= index; i--) {
+      Hint placement = placements.remove(i);
+      filled[placement.row][placement.col] = 0;
+      environment.worldPop();
+    }
+    for (Hint placement : later) {
+      place(placement.row, placement.col, placement.value);
+    }
+  }
+
+
+  /**
+   * Find the next cell that's forced by the cells filled so far. Cells are checked going in rows, so the same
+   * grid always gets the same hint.
+   *
+   * @return the cell, and the value it has to be, or null if no empty cell is forced without a search
+   */
+  Hint hint() {
+    if (!consistent) {
+      return null;
+    }
+    for (int row = 0; row != size; row++) {
+      for (int col = 0; col != size; col++) {
+        if (filled[row][col] == 0 && grid[row][col].isInstantiated()) {
+          return new Hint(row, col, grid[row][col].getValue());
+        }
+      }
+    }
+    return null;
+  }
+
+
+  /**
+   * @return what the player can see, in the form of [row][column], with 0 for an empty cell
+   */
+  int[][] filled() {
+    int[][] copy = new int[size][];
+    for (int row = 0; row != size; row++) {
+      copy[row] = filled[row].clone();
+    }
+    return copy;
+  }
+
+
+  /**
+   * Propagate the predefined values, in the root world
+   *
+   * @return false if they contradict each other
+   */
+  private boolean propagate() {
+    try {
+      solver.propagate();
+      return true;
+    } catch (ContradictionException e) {
+      solver.getEngine().flush();
+      return false;
+    }
+  }
+
+
+  /**
+   * A cell and its value: either a hint, or a placement the player made
+   */
+  static final class Hint {
+    private final int row;
+    private final int col;
+    private final int value;
+
+    private Hint(int row, int col, int value) {
+      this.row = row;
+      this.col = col;
+      this.value = value;
+    }
+
+    int row() {
+      return row;
+    }
+
+    int col() {
+      return col;
+    }
+
+    int value() {
+      return value;
+    }
+
+    @Override
+    public String toString() {
+      return format("[%s.%s]=%s", row, col, value);
+    }
+  }
+}
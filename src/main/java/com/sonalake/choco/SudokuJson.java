@@ -0,0 +1,206 @@
+package com.sonalake.choco;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Just enough JSON for {@link SudokuServer}, so we don't need a library for it. A request is an object with
+ * either:
+ * <p>
+ * - {@code "puzzle"}: a single puzzle, as a string in the one-line format, which can be followed by the fields of
+ * a {@link SudokuVariant}
+ * - {@code "puzzles"}: an array of them
+ * <p>
+ * Any other members are skipped, whatever they hold.
+ */
+final class SudokuJson {
+
+  private final String text;
+  private int position;
+
+  private SudokuJson(String text) {
+    this.text = text;
+  }
+
+
+  /**
+   * Read the puzzles out of a request
+   *
+   * @param text the request body
+   * @return the puzzles, as lines in the one-line format
+   * @throws IllegalArgumentException if the body isn't the JSON we expect
+   */
+  static List<String> readPuzzles(String text) {
+    SudokuJson json = new SudokuJson(text);
+    List<String> puzzles = new ArrayList<>();
+    boolean found = false;
+
+    json.expect('{');
+    if (!json.skipIf('}')) {
+      do {
+        String name = json.readString();
+        json.expect(':');
+        if ("puzzle".equals(name)) {
+          puzzles.add(json.readString().trim());
+          found = true;
+        } else if ("puzzles".equals(name)) {
+          json.expect('[');
+          if (!json.skipIf(']')) {
+            do {
+              puzzles.add(json.readString().trim());
+            } while (json.skipIf(','));
+            json.expect(']');
+          }
+          found = true;
+        } else {
+          json.skipValue();
+        }
+      } while (json.skipIf(','));
+      json.expect('}');
+    }
+    json.skipWhitespace();
+    if (json.position != text.length()) {
+      throw json.error("Unexpected content after the object");
+    }
+    if (!found) {
+      throw new IllegalArgumentException("Expected a \"puzzle\" or \"puzzles\" member");
+    }
+    return puzzles;
+  }
+
+
+  /**
+   * Write the response for a request
+   *
+   * @param solutions the solutions, in the same order as the puzzles, with a null for each that has none
+   * @return the response body
+   */
+  static String writeSolutions(int[][][] solutions) {
+    StringBuilder json = new StringBuilder("{\"solutions\":[");
+    for (int i = 0; i != solutions.length; i++) {
+      json.append(i == 0 ? "" : ",");
+      if (solutions[i] == null) {
+        json.append("null");
+      } else {
+        // a line only ever has symbols in it, so there's nothing to escape
+        json.append('"').append(Sudoku.toLine(solutions[i])).append('"');
+      }
+    }
+    return json.append("]}\n").toString();
+  }
+
+
+  private String readString() {
+    expect('"');
+    StringBuilder value = new StringBuilder();
+    while (position < text.length()) {
+      char c = text.charAt(position++);
+      if (c == '"') {
+        return value.toString();
+      }
+      if (c != '\\') {
+        value.append(c);
+        continue;
+      }
+      if (position >= text.length()) {
+        break;
+      }
+      char escaped = text.charAt(position++);
+      switch (escaped) {
+        case 'n':
+          value.append('\n');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'u':
+          if (position + 4 > text.length()) {
+            throw error("Incomplete unicode escape");
+          }
+          try {
+            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+          } catch (NumberFormatException e) {
+            throw error("Bad unicode escape");
+          }
+          position += 4;
+          break;
+        default:
+          // \" \\ and \/
+          value.append(escaped);
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+  /**
+   * Skip over a value we don't need, which can be anything
+   */
+  private void skipValue() {
+    skipWhitespace();
+    if (position >= text.length()) {
+      throw error("Expected a value");
+    }
+    char c = text.charAt(position);
+    if (c == '"') {
+      readString();
+    } else if (c == '{' || c == '[') {
+      char close = c == '{' ? '}' : ']';
+      position++;
+      if (!skipIf(close)) {
+        do {
+          if (close == '}') {
+            readString();
+            expect(':');
+          }
+          skipValue();
+        } while (skipIf(','));
+        expect(close);
+      }
+    } else {
+      // a number, true, false or null
+      int start = position;
+      while (position < text.length() && "{}[],:\" \t\r\n".indexOf(text.charAt(position)) < 0) {
+        position++;
+      }
+      if (start == position) {
+        throw error("Expected a value");
+      }
+    }
+  }
+
+  private void expect(char c) {
+    if (!skipIf(c)) {
+      throw error(format("Expected '%s'", c));
+    }
+  }
+
+  private boolean skipIf(char c) {
+    skipWhitespace();
+    if (position < text.length() && text.charAt(position) == c) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void skipWhitespace() {
+    while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+      position++;
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(format("%s at character %s", message, position));
+  }
+}
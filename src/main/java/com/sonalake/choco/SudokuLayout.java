@@ -0,0 +1,187 @@
+package com.sonalake.choco;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+
+/**
+ * The shape of a sudoku grid: how big it is, and which cells are in each row, column and region.
+ * <p>
+ * A grid of size n has n rows, n columns and n regions, each of n cells, and the size must be a square number
+ * (4, 9, 16, 25, 36...). In a standard grid the regions are the sqrt(n) x sqrt(n) squares, but a jigsaw grid can
+ * have regions of any shape. Cells are numbered going in rows, so cell i is at [i / size][i % size].
+ * <p>
+ * The cell numbers for each row / column / region are worked out once and shared, so nothing needs to be
+ * calculated when we're posting the constraints. The standard layouts are kept, one per size.
+ */
+final class SudokuLayout {
+
+  private static final Map<Integer, SudokuLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+  private final int size;
+  private final int squareSize;
+  private final int[][] rows;
+  private final int[][] columns;
+  private final int[][] regions;
+  // the region each cell is in
+  private final int[] regionOf;
+  private final boolean standard;
+
+  private SudokuLayout(int size, int squareSize) {
+    this(size, squareSize, squareRegions(size, squareSize), true);
+  }
+
+  private SudokuLayout(int size, int squareSize, int[] regionOf, boolean standard) {
+    this.size = size;
+    this.squareSize = squareSize;
+    this.rows = new int[size][size];
+    this.columns = new int[size][size];
+    this.regions = new int[size][size];
+    this.regionOf = regionOf;
+    this.standard = standard;
+
+    // how many cells we've put in each region so far
+    int[] filled = new int[size];
+    for (int row = 0; row != size; row++) {
+      for (int column = 0; column != size; column++) {
+        int cell = row * size + column;
+        rows[row][column] = cell;
+        columns[column][row] = cell;
+        // the cells within a region go in rows
+        int region = regionOf[cell];
+        regions[region][filled[region]++] = cell;
+      }
+    }
+  }
+
+  /**
+   * @return the square each cell is in, with the squares numbered going in rows
+   */
+  private static int[] squareRegions(int size, int squareSize) {
+    int[] regionOf = new int[size * size];
+    for (int row = 0; row != size; row++) {
+      for (int column = 0; column != size; column++) {
+        regionOf[row * size + column] = squareSize * (row / squareSize) + column / squareSize;
+      }
+    }
+    return regionOf;
+  }
+
+
+  /**
+   * Get the layout for a grid of the given size
+   *
+   * @param size the number of cells in a row, which must be a square number
+   * @return the layout
+   */
+  static SudokuLayout of(int size) {
+    SudokuLayout layout = LAYOUTS.get(size);
+    if (layout != null) {
+      return layout;
+    }
+
+    int squareSize = (int) Math.round(Math.sqrt(size));
+    if (size < 1 || squareSize * squareSize != size) {
+      throw new IllegalArgumentException(format("A sudoku grid can't have a size of %s", size));
+    }
+    return LAYOUTS.computeIfAbsent(size, s -> new SudokuLayout(s, squareSize));
+  }
+
+  /**
+   * Get the layout for a grid with the given number of cells
+   *
+   * @param cellCount the total number of cells, e.g. 81 for a 9x9 grid
+   * @return the layout
+   */
+  static SudokuLayout ofCellCount(int cellCount) {
+    int size = (int) Math.round(Math.sqrt(cellCount));
+    if (size * size != cellCount) {
+      throw new IllegalArgumentException(format("%s cells can't make a square grid", cellCount));
+    }
+    return of(size);
+  }
+
+  /**
+   * Get the layout for a jigsaw grid, where the regions can be any shape
+   *
+   * @param regionOf the region each cell is in, numbered from 0, with the cells going in rows. There must be
+   *                 as many regions as there are cells in a row, and they must all be the same size
+   * @return the layout
+   */
+  static SudokuLayout jigsaw(int[] regionOf) {
+    int size = ofCellCount(regionOf.length).size();
+    int[] counts = new int[size];
+    for (int cell = 0; cell != regionOf.length; cell++) {
+      int region = regionOf[cell];
+      if (region < 0 || region >= size) {
+        throw new IllegalArgumentException(format("Cell %s is in region %s, but there are only %s regions",
+          cell, region, size));
+      }
+      if (++counts[region] > size) {
+        throw new IllegalArgumentException(format("Region %s has more than %s cells", region, size));
+      }
+    }
+    return new SudokuLayout(size, of(size).squareSize(), regionOf.clone(), false);
+  }
+
+  /**
+   * @return the number of cells in a row, column or region
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of cells along one side of a square, in the standard layout of this size
+   */
+  int squareSize() {
+    return squareSize;
+  }
+
+  /**
+   * @return the number of cells in the grid
+   */
+  int cellCount() {
+    return size * size;
+  }
+
+  /**
+   * @param row the row, starting at 0
+   * @return the cells in the row
+   */
+  int[] row(int row) {
+    return rows[row];
+  }
+
+  /**
+   * @param column the column, starting at 0
+   * @return the cells in the column
+   */
+  int[] column(int column) {
+    return columns[column];
+  }
+
+  /**
+   * @param region the region, starting at 0. In the standard layout the regions are squares, going in rows
+   * @return the cells in the region
+   */
+  int[] region(int region) {
+    return regions[region];
+  }
+
+  /**
+   * @param cell the cell, numbered going in rows
+   * @return the region the cell is in
+   */
+  int regionOf(int cell) {
+    return regionOf[cell];
+  }
+
+  /**
+   * @return true if the regions are the usual squares, false for a jigsaw
+   */
+  boolean isStandard() {
+    return standard;
+  }
+}
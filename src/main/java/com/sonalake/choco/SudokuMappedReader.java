@@ -0,0 +1,215 @@
+package com.sonalake.choco;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * Reads sudoku puzzles in the one-line format from a file, by memory mapping it and parsing each puzzle
+ * straight from the mapped bytes into an int grid. There's no String, char[] or decoder per line, so this is
+ * a lot cheaper than a BufferedReader for the big corpora.
+ * <p>
+ * The file is mapped a chunk at a time, so files bigger than the 2GB a single mapping can hold are fine.
+ * <p>
+ * As with the other readers, blank lines and lines starting with # are skipped, and any whitespace around a
+ * puzzle is ignored. A puzzle can be followed by the fields of a {@link SudokuVariant}, such as a jigsaw's
+ * regions or a killer's cages, which are only decoded into a String for the lines that have them.
+ * <p>
+ * A reader is not thread safe, so use one per thread.
+ */
+final class SudokuMappedReader implements Closeable {
+
+  // how much of the file we map at once
+  private static final long CHUNK_SIZE = 1L << 30;
+
+  // the value for each byte, 0 for unknowns, and -1 for anything that isn't a value
+  private static final int[] VALUES = values();
+
+  private final FileChannel channel;
+  private final long end;
+
+  // the part of the file that's mapped at the moment, from chunkStart to chunkEnd
+  private MappedByteBuffer chunk;
+  private long chunkStart;
+  private long chunkEnd;
+
+  // where the next line starts
+  private long position;
+  // the variant of the last puzzle we read
+  private SudokuVariant variant;
+
+  private SudokuMappedReader(FileChannel channel) throws IOException {
+    this.channel = channel;
+    this.end = channel.size();
+  }
+
+
+  /**
+   * Open a reader for the whole file
+   *
+   * @param file the file of puzzles, one per line
+   * @return the reader
+   */
+  static SudokuMappedReader open(Path file) throws IOException {
+    return new SudokuMappedReader(FileChannel.open(file, StandardOpenOption.READ));
+  }
+
+
+  /**
+   * Read the next puzzle. Use {@link #variant()} to get the rules it's played by
+   *
+   * @return the predefined values in the form of [row][column], 0 means unknown, or null if there are no more
+   */
+  int[][] next() throws IOException {
+    while (position < end) {
+      long lineStart = position;
+      long lineEnd = findLineEnd(lineStart);
+      position = lineEnd + 1;
+
+      // ignore any whitespace around the puzzle, as well as blank lines and comments
+      long first = lineStart;
+      long last = Math.min(lineEnd, end);
+      while (first < last && byteAt(first) <= ' ') {
+        first++;
+      }
+      while (last > first && byteAt(last - 1) <= ' ') {
+        last--;
+      }
+      if (first == last || byteAt(lineStart) == '#') {
+        continue;
+      }
+
+      // the puzzle goes up to the first whitespace, and anything after that is its variant
+      long gridEnd = first;
+      while (gridEnd < last && byteAt(gridEnd) > ' ') {
+        gridEnd++;
+      }
+      int[][] predefinedRows = parse(first, gridEnd);
+      variant = gridEnd == last
+        ? SudokuVariant.classic(predefinedRows.length)
+        : parseVariant(predefinedRows.length, gridEnd, last);
+      return predefinedRows;
+    }
+    return null;
+  }
+
+  /**
+   * @return the rules the last puzzle from {@link #next()} is played by, which for most is the classic sudoku
+   */
+  SudokuVariant variant() {
+    return variant;
+  }
+
+  @Override
+  public void close() throws IOException {
+    chunk = null;
+    channel.close();
+  }
+
+
+  /**
+   * Parse a puzzle from the mapped bytes, in the same way as {@link Sudoku#parse(CharSequence)}
+   */
+  private int[][] parse(long first, long last) {
+    SudokuLayout layout;
+    try {
+      layout = SudokuLayout.ofCellCount((int) (last - first));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(format("At byte %s: %s", first, e.getMessage()), e);
+    }
+
+    int size = layout.size();
+    int[][] predefinedRows = new int[size][size];
+    int offset = (int) (first - chunkStart);
+    for (int row = 0; row != size; row++) {
+      int[] values = predefinedRows[row];
+      for (int col = 0; col != size; col++) {
+        int c = chunk.get(offset++) & 0xff;
+        int value = VALUES[c];
+        if (value < 0 || value > size) {
+          throw new IllegalArgumentException(format("At byte %s: unexpected character '%s' at position %s",
+            first, (char) c, row * size + col));
+        }
+        values[col] = value;
+      }
+    }
+    return predefinedRows;
+  }
+
+
+  /**
+   * Parse the variant fields that follow a puzzle
+   */
+  private SudokuVariant parseVariant(int size, long first, long last) {
+    StringBuilder fields = new StringBuilder((int) (last - first));
+    for (long i = first; i != last; i++) {
+      fields.append((char) (byteAt(i) & 0xff));
+    }
+    try {
+      return SudokuVariant.parse(size, fields);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(format("At byte %s: %s", first, e.getMessage()), e);
+    }
+  }
+
+
+  /**
+   * Find the newline at the end of the line starting here, mapping more of the file as we need it
+   *
+   * @return the position of the newline, or the end of the file if there isn't one
+   */
+  private long findLineEnd(long lineStart) throws IOException {
+    ensureMapped(lineStart);
+    while (true) {
+      long limit = Math.min(end, chunkEnd);
+      for (long i = lineStart; i < limit; i++) {
+        if (chunk.get((int) (i - chunkStart)) == '\n') {
+          return i;
+        }
+      }
+      if (limit == end) {
+        return end;
+      }
+      if (chunkStart == lineStart) {
+        throw new IOException(format("At byte %s: the line is longer than %s bytes", lineStart, CHUNK_SIZE));
+      }
+      // the line runs off the end of this chunk, so map again from the start of the line
+      map(lineStart);
+    }
+  }
+
+  private byte byteAt(long position) {
+    return chunk.get((int) (position - chunkStart));
+  }
+
+  private void ensureMapped(long position) throws IOException {
+    if (chunk == null || position < chunkStart || position >= chunkEnd) {
+      map(position);
+    }
+  }
+
+  private void map(long start) throws IOException {
+    long length = Math.min(CHUNK_SIZE, end - start);
+    chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+    chunkStart = start;
+    chunkEnd = start + length;
+  }
+
+
+  private static int[] values() {
+    int[] values = new int[256];
+    Arrays.fill(values, -1);
+    values['.'] = 0;
+    values['0'] = 0;
+    for (int i = 0; i != Sudoku.SYMBOLS.length(); i++) {
+      values[Sudoku.SYMBOLS.charAt(i)] = i + 1;
+    }
+    return values;
+  }
+}
@@ -0,0 +1,217 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Solves sudoku puzzles with a portfolio of differently configured models, for the rare puzzle where the normal
+ * search goes badly wrong.
+ * <p>
+ * Every puzzle is first given to the normal engine, with a budget of nodes and time. Nearly every puzzle is
+ * solved well within that, and never costs more than a normal solve. If the budget runs out, we:
+ * <p>
+ * - give the puzzle to every member of the portfolio at once, each on its own thread, and each with its own
+ * model and a different {@link SudokuConfig.Strategy}: dom/wdeg, dom/wdeg with restarts, last conflict, and
+ * random with restarts
+ * - take the answer from whichever finishes first
+ * - stop the others, and wait for them to give up, so they're ready for the next puzzle
+ * <p>
+ * A portfolio is not thread safe, so use one per thread, but the members can run on a shared pool.
+ */
+final class SudokuPortfolio {
+
+  // how many members there are, and so how many threads a portfolio can use at once
+  static final int MEMBERS = 4;
+
+  private final SudokuEngine engine;
+  private final SudokuVariant classic;
+  private final List<Member> members = new ArrayList<>();
+  private final ExecutorService workers;
+  private final long maxNodes;
+  private final long maxNanos;
+
+  private final AtomicLong escalations = new AtomicLong();
+  private final AtomicLongArray wins;
+
+  /**
+   * @param size      the number of cells in a row, 9 for a standard sudoku
+   * @param config    how the normal model should be built. The members share its consistency, but each has its
+   *                  own search
+   * @param jigsaw    if true, every model is built for jigsaws, see {@link SudokuEngine}
+   * @param maxNodes  how many nodes the normal search can open before we try the portfolio
+   * @param maxMillis how long the normal search can take before we try the portfolio
+   * @param workers   where the members run
+   */
+  SudokuPortfolio(int size, SudokuConfig config, boolean jigsaw, long maxNodes, long maxMillis,
+                  ExecutorService workers) {
+    this.engine = new SudokuEngine(size, config, jigsaw);
+    this.classic = SudokuVariant.classic(size);
+    this.workers = workers;
+    this.maxNodes = maxNodes;
+    this.maxNanos = maxMillis * 1_000_000;
+
+    members.add(new Member(size, config.withStrategy(SudokuConfig.Strategy.DOM_WDEG).withRestarts(false), jigsaw));
+    members.add(new Member(size, config.withStrategy(SudokuConfig.Strategy.DOM_WDEG).withRestarts(true), jigsaw));
+    members.add(new Member(size, config.withStrategy(SudokuConfig.Strategy.LAST_CONFLICT).withRestarts(false), jigsaw));
+    members.add(new Member(size, config.withStrategy(SudokuConfig.Strategy.RANDOM).withRestarts(true), jigsaw));
+    this.wins = new AtomicLongArray(MEMBERS);
+  }
+
+
+  /**
+   * Solve the given puzzle, going to the portfolio if the normal search runs out of budget
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the portfolio
+   * @param solution       where the solution will be written, in the form of [row][column]
+   * @return true if there was a solution, false otherwise
+   */
+  boolean solve(int[][] predefinedRows, int[][] solution) {
+    return solve(predefinedRows, classic, solution);
+  }
+
+
+  /**
+   * Solve the given puzzle of a variant, going to the portfolio if the normal search runs out of budget
+   *
+   * @param predefinedRows the predefined values, 0 means unknown. This must be the same size as the portfolio
+   * @param variant        the regions and cages of the puzzle. Only a portfolio for jigsaws can take regions
+   *                       that aren't the squares
+   * @param solution       where the solution will be written, in the form of [row][column]
+   * @return true if there was a solution, false otherwise
+   */
+  boolean solve(int[][] predefinedRows, SudokuVariant variant, int[][] solution) {
+    Solver solver = engine.getSolver();
+    long deadline = System.nanoTime() + maxNanos;
+    if (engine.solve(predefinedRows, variant, solution,
+      () -> solver.getNodeCount() >= maxNodes || System.nanoTime() >= deadline)) {
+      return true;
+    }
+    if (!engine.stopped()) {
+      // the search finished, and there's no solution
+      return false;
+    }
+
+    escalations.incrementAndGet();
+    try {
+      return race(predefinedRows, variant, solution);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the portfolio", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A portfolio member failed", e.getCause());
+    }
+  }
+
+
+  /**
+   * Run every member on the puzzle, and take the first answer
+   */
+  private boolean race(int[][] predefinedRows, SudokuVariant variant, int[][] solution)
+    throws InterruptedException, ExecutionException {
+    AtomicBoolean done = new AtomicBoolean();
+    CompletionService<Member> finished = new ExecutorCompletionService<>(workers);
+    for (Member member : members) {
+      finished.submit(() -> {
+        member.solved = member.engine.solve(predefinedRows, variant, member.solution, done::get);
+        return member;
+      });
+    }
+
+    // a member only stops early once another has finished, so the first to finish always has the answer
+    Member winner;
+    int taken = 0;
+    try {
+      Future<Member> first = finished.take();
+      taken++;
+      done.set(true);
+      winner = first.get();
+    } finally {
+      // the members' engines are used again for the next puzzle, so wait for all of them to stop, even if the
+      // first one failed or we were interrupted
+      done.set(true);
+      awaitRest(finished, members.size() - taken);
+    }
+
+    wins.incrementAndGet(members.indexOf(winner));
+    if (winner.solved) {
+      for (int row = 0; row != solution.length; row++) {
+        System.arraycopy(winner.solution[row], 0, solution[row], 0, solution.length);
+      }
+    }
+    return winner.solved;
+  }
+
+  /**
+   * Wait for the members that are still running to finish, whatever their outcome. An interrupt doesn't stop the
+   * wait, but is passed on once it's over
+   */
+  private static void awaitRest(CompletionService<Member> finished, int running) {
+    boolean interrupted = false;
+    while (running != 0) {
+      try {
+        finished.take();
+        running--;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+  /**
+   * @return how many puzzles went to the portfolio
+   */
+  long escalations() {
+    return escalations.get();
+  }
+
+  /**
+   * @return the names of the members, in the same order as {@link #wins(int)}
+   */
+  List<String> memberNames() {
+    List<String> names = new ArrayList<>();
+    for (Member member : members) {
+      names.add(member.name);
+    }
+    return names;
+  }
+
+  /**
+   * @param member the member's position in {@link #memberNames()}
+   * @return how many times that member was first to finish
+   */
+  long wins(int member) {
+    return wins.get(member);
+  }
+
+
+  /**
+   * One of the differently configured models in the portfolio
+   */
+  private static final class Member {
+    private final String name;
+    private final SudokuEngine engine;
+    private final int[][] solution;
+    // only read once the member's task has finished
+    private boolean solved;
+
+    private Member(int size, SudokuConfig config, boolean jigsaw) {
+      this.name = config.strategy() + (config.restarts() ? "+restarts" : "");
+      this.engine = new SudokuEngine(size, config, jigsaw);
+      this.solution = new int[size][size];
+    }
+  }
+}
@@ -0,0 +1,380 @@
+package com.sonalake.choco;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+
+/**
+ * A small HTTP endpoint that solves sudoku puzzles, built on the JDK's own HttpServer so there's nothing else to
+ * deploy.
+ * <p>
+ * {@code POST /solve} takes either:
+ * <p>
+ * - plain text: one puzzle per line in the one-line format, optionally followed by the fields of a
+ * {@link SudokuVariant}, and gives back one solution per line, with a line of dots for no solution
+ * - JSON (a Content-Type with json in it, or a body that starts with a brace): {@code {"puzzle": "..."}} or
+ * {@code {"puzzles": ["...", ...]}}, and gives back {@code {"solutions": ["...", ...]}}, with a null for no
+ * solution
+ * <p>
+ * Each request is handled on a virtual thread where the JVM has them (Java 21 on), or on a bounded pool of
+ * platform threads before that. Requests only wait on I/O there; the solving is handed to a fixed pool of solver
+ * threads, each with its own reused {@link SudokuEngine engines}, in front of which there's a bounded queue. So
+ * a spike in load can't run the JVM out of memory or threads:
+ * <p>
+ * - only as many requests as there are solvers and places in the queue are let in at once, before their bodies
+ * are read, and any more get a 503 with a Retry-After straight away
+ * - a request body is limited in size, and in how many puzzles it can have
+ * - each request has a time budget for all of its puzzles, after which it gets a 503 rather than holding on to
+ * its solver
+ * <p>
+ * Usage: {@code SudokuServer [options]}, where the options are:
+ * <p>
+ * - {@code --port=N}: the port to listen on, 8080 by default
+ * - {@code --solvers=N}: how many puzzles can be solved at once, by default one per core
+ * - {@code --queue=N}: how many requests can wait for a solver, by default 16 per solver
+ * - {@code --budget-ms=N}: how long the puzzles of one request can take altogether, 5000ms by default
+ * - {@code --max-puzzles=N}: the most puzzles in one request, 1000 by default
+ */
+public class SudokuServer {
+
+  // the biggest request body we'll read
+  private static final int MAX_BODY_BYTES = 1 << 20;
+
+  private static final int DEFAULT_PORT = 8080;
+  private static final int DEFAULT_QUEUE_PER_SOLVER = 16;
+  private static final long DEFAULT_BUDGET_MILLIS = 5000;
+  private static final int DEFAULT_MAX_PUZZLES = 1000;
+
+  private final HttpServer server;
+  private final ExecutorService requestThreads;
+  private final ThreadPoolExecutor solvers;
+  // a permit for each request that's being read, solved or answered, so there's never more of them in memory
+  // than the solvers and their queue can take
+  private final Semaphore admissions;
+  private final long budgetMillis;
+  private final int maxPuzzles;
+  private final SudokuConfig config;
+  // each solver thread builds its models once per grid size, and jigsaws are kept under the negative size
+  private final ThreadLocal<Map<Integer, SudokuEngine>> engines = ThreadLocal.withInitial(HashMap::new);
+
+  private final AtomicLong solved = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+
+  /**
+   * @param port         the port to listen on, or 0 for any free port
+   * @param solverCount  how many puzzles can be solved at once
+   * @param queueSize    how many requests can wait for a solver before we turn them away
+   * @param budgetMillis how long the puzzles of one request can take altogether
+   * @param maxPuzzles   the most puzzles in one request
+   * @param config       how the models are built
+   */
+  SudokuServer(int port, int solverCount, int queueSize, long budgetMillis, int maxPuzzles, SudokuConfig config)
+    throws IOException {
+    this.budgetMillis = budgetMillis;
+    this.maxPuzzles = maxPuzzles;
+    this.config = config;
+    this.solvers = new ThreadPoolExecutor(solverCount, solverCount, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(queueSize), new ThreadPoolExecutor.AbortPolicy());
+    this.admissions = new Semaphore(solverCount + queueSize);
+    this.requestThreads = requestThreads(solverCount + queueSize);
+
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/solve", this::handle);
+    server.setExecutor(requestThreads);
+  }
+
+  static public void main(String... args) throws IOException {
+    int port = DEFAULT_PORT;
+    int solverCount = Runtime.getRuntime().availableProcessors();
+    int queueSize = -1;
+    long budgetMillis = DEFAULT_BUDGET_MILLIS;
+    int maxPuzzles = DEFAULT_MAX_PUZZLES;
+    for (String arg : args) {
+      String value = arg.substring(arg.indexOf('=') + 1);
+      if (arg.startsWith("--port=")) {
+        port = Integer.parseInt(value);
+      } else if (arg.startsWith("--solvers=")) {
+        solverCount = Integer.parseInt(value);
+      } else if (arg.startsWith("--queue=")) {
+        queueSize = Integer.parseInt(value);
+      } else if (arg.startsWith("--budget-ms=")) {
+        budgetMillis = Long.parseLong(value);
+      } else if (arg.startsWith("--max-puzzles=")) {
+        maxPuzzles = Integer.parseInt(value);
+      } else {
+        System.err.println("Usage: SudokuServer [--port=8080] [--solvers=N] [--queue=N] [--budget-ms=5000] "
+          + "[--max-puzzles=1000]");
+        return;
+      }
+    }
+    if (queueSize < 0) {
+      queueSize = solverCount * DEFAULT_QUEUE_PER_SOLVER;
+    }
+
+    SudokuServer server = new SudokuServer(port, solverCount, queueSize, budgetMillis, maxPuzzles,
+      SudokuConfig.DEFAULT);
+    server.start();
+    System.out.println(format("Listening on port %s with %s solvers and a queue of %s", server.port(),
+      solverCount, queueSize));
+  }
+
+
+  void start() {
+    server.start();
+  }
+
+  /**
+   * Stop taking requests, and give the ones in flight a moment to finish
+   */
+  void stop() {
+    server.stop(1);
+    solvers.shutdownNow();
+    requestThreads.shutdownNow();
+  }
+
+  /**
+   * @return the port we're listening on
+   */
+  int port() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return how many puzzles have been solved, and how many requests were turned away because we were too busy
+   */
+  String stats() {
+    return format("%s puzzles solved, %s requests rejected", solved.get(), rejected.get());
+  }
+
+
+  /**
+   * The threads requests are handled on: virtual threads if this JVM has them, otherwise a fixed number of
+   * platform threads. When those are all busy the HttpServer's own thread runs the request, so it stops
+   * accepting new connections until one is free, and the backlog builds up in the OS rather than in memory.
+   */
+  private static ExecutorService requestThreads(int platformThreads) {
+    try {
+      // looked up by name, so this still builds and runs on the versions before Java 21
+      Method virtualThreads = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) virtualThreads.invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return new ThreadPoolExecutor(platformThreads, platformThreads, 0, TimeUnit.MILLISECONDS,
+        new SynchronousQueue<>(), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+  }
+
+
+  private void handle(HttpExchange exchange) throws IOException {
+    // turn the request away before reading its body, as a virtual thread per connection doesn't stop any number
+    // of them reading a body each at once
+    if (!admissions.tryAcquire()) {
+      try {
+        tooBusy(exchange);
+      } finally {
+        exchange.close();
+      }
+      return;
+    }
+
+    try {
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        respond(exchange, 405, "text/plain", "Puzzles have to be POSTed\n");
+        return;
+      }
+
+      String body = readBody(exchange.getRequestBody());
+      if (body == null) {
+        respond(exchange, 413, "text/plain", format("A request can't be more than %s bytes\n", MAX_BODY_BYTES));
+        return;
+      }
+      String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+      boolean json = contentType != null && contentType.contains("json") || body.trim().startsWith("{");
+
+      List<String> lines;
+      List<int[][]> puzzles = new ArrayList<>();
+      List<SudokuVariant> variants = new ArrayList<>();
+      try {
+        lines = json ? SudokuJson.readPuzzles(body) : plainLines(body);
+        if (lines.size() > maxPuzzles) {
+          throw new IllegalArgumentException(format("A request can't have more than %s puzzles", maxPuzzles));
+        }
+        for (String line : lines) {
+          int split = firstSpace(line);
+          int[][] puzzle = Sudoku.parse(line.substring(0, split));
+          puzzles.add(puzzle);
+          variants.add(SudokuVariant.parse(puzzle.length, line.substring(split)));
+        }
+      } catch (IllegalArgumentException e) {
+        respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+        return;
+      }
+
+      // hand the puzzles to a solver, or turn the request away if they're all busy and the queue is full
+      Future<int[][][]> answer;
+      try {
+        answer = solvers.submit(() -> solveAll(puzzles, variants));
+      } catch (RejectedExecutionException e) {
+        tooBusy(exchange);
+        return;
+      }
+
+      int[][][] solutions;
+      try {
+        solutions = answer.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof BudgetExceededException) {
+          respond(exchange, 503, "text/plain", e.getCause().getMessage() + "\n");
+          return;
+        }
+        // anything else is our fault, but the client should still get an answer rather than a dropped connection
+        respond(exchange, 500, "text/plain", format("Solving failed: %s\n", e.getCause()));
+        return;
+      } catch (InterruptedException e) {
+        answer.cancel(true);
+        Thread.currentThread().interrupt();
+        return;
+      }
+
+      if (json) {
+        respond(exchange, 200, "application/json", SudokuJson.writeSolutions(solutions));
+      } else {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i != solutions.length; i++) {
+          int size = puzzles.get(i).length;
+          text.append(Sudoku.toLine(solutions[i] == null ? new int[size][size] : solutions[i])).append('\n');
+        }
+        respond(exchange, 200, "text/plain", text.toString());
+      }
+    } finally {
+      admissions.release();
+      exchange.close();
+    }
+  }
+
+  /**
+   * Turn a request away, as every solver is busy and the queue is full
+   */
+  private void tooBusy(HttpExchange exchange) throws IOException {
+    rejected.incrementAndGet();
+    exchange.getResponseHeaders().set("Retry-After", "1");
+    respond(exchange, 503, "text/plain", "Too busy, try again later\n");
+  }
+
+
+  /**
+   * Solve every puzzle of a request, on one of the solver threads
+   *
+   * @return the solutions, with a null for each puzzle that has none
+   */
+  private int[][][] solveAll(List<int[][]> puzzles, List<SudokuVariant> variants) {
+    int[][][] solutions = new int[puzzles.size()][][];
+    // one deadline for them all, or a request with a lot of puzzles could keep its solver for a budget each
+    long deadline = System.nanoTime() + budgetMillis * 1_000_000;
+    for (int i = 0; i != puzzles.size(); i++) {
+      int[][] puzzle = puzzles.get(i);
+      SudokuVariant variant = variants.get(i);
+      int size = puzzle.length;
+      int key = variant.layout().isStandard() ? size : -size;
+      SudokuEngine engine = engines.get().computeIfAbsent(key, k -> new SudokuEngine(size, config, k < 0));
+
+      int[][] solution = new int[size][size];
+      if (engine.solve(puzzle, variant, solution, () -> System.nanoTime() >= deadline)) {
+        solutions[i] = solution;
+      } else if (engine.stopped()) {
+        throw new BudgetExceededException(format("Gave up on puzzle %s of %s, as the request ran over its %sms",
+          i + 1, puzzles.size(), budgetMillis));
+      }
+      solved.incrementAndGet();
+    }
+    return solutions;
+  }
+
+
+  /**
+   * @return the body as a String, or null if it's too big
+   */
+  private static String readBody(InputStream in) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      if (body.size() + read > MAX_BODY_BYTES) {
+        return null;
+      }
+      body.write(buffer, 0, read);
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the puzzle lines of a plain text body, skipping blank lines and comments as the files do
+   */
+  private static List<String> plainLines(String body) {
+    List<String> lines = new ArrayList<>();
+    for (String line : body.split("\n")) {
+      String trimmed = line.trim();
+      if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+        lines.add(trimmed);
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * @return where the puzzle ends and the variant fields start, or the end of the line if there are none
+   */
+  private static int firstSpace(String line) {
+    for (int i = 0; i != line.length(); i++) {
+      if (Character.isWhitespace(line.charAt(i))) {
+        return i;
+      }
+    }
+    return line.length();
+  }
+
+  private static void respond(HttpExchange exchange, int status, String contentType, String body)
+    throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+
+  /**
+   * Thrown when a request's puzzles run over its budget, which the client hears about as a 503
+   */
+  private static final class BudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private BudgetExceededException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package com.sonalake.choco;
+
+/**
+ * A quick pass over a puzzle that fills in the cells that are forced by the two simplest sudoku rules, before
+ * we go to the trouble of building or searching a choco model:
+ * <p>
+ * - naked singles: a cell with only one value left that it can be
+ * - hidden singles: a value with only one cell left in a row, column or region that it can go in
+ * <p>
+ * Most easy puzzles are solved by these rules alone, so never need choco at all. For the rest, the cells we
+ * filled are the same ones choco would have had to work out, so it's left with a smaller puzzle.
+ * <p>
+ * The values each row, column and region already has are kept as bitmasks, with bit (v - 1) set for value v, so
+ * the candidates for a cell are just the values not in any of its three masks. A long has room for grids of up
+ * to 64x64, which is more than the one-line format can write anyway.
+ * <p>
+ * The regions can be the usual squares or a jigsaw's. Any other rules of a variant, such as a killer's cages,
+ * only ever take values away, so whatever these rules fill in is still forced.
+ */
+final class SudokuSingles {
+
+  /**
+   * What the pass found
+   */
+  enum Outcome {
+    // every cell is filled
+    SOLVED,
+    // some cells are still unknown, and need a search
+    PARTIAL,
+    // the predefined values can't be part of a solution
+    CONTRADICTION
+  }
+
+  // the largest grid the masks have room for
+  static final int MAX_SIZE = Long.SIZE;
+
+  private SudokuSingles() {
+  }
+
+
+  /**
+   * Fill in every cell that's forced by naked or hidden singles, repeating until nothing else can be filled
+   *
+   * @param grid the puzzle, in the form of [row][column] with 0 for unknowns. This is filled in place
+   * @return whether the grid was solved, is still partial, or can't be solved
+   */
+  static Outcome fill(int[][] grid) {
+    return fill(grid, SudokuLayout.of(grid.length));
+  }
+
+  /**
+   * Fill in every cell that's forced by naked or hidden singles, repeating until nothing else can be filled
+   *
+   * @param grid   the puzzle, in the form of [row][column] with 0 for unknowns. This is filled in place
+   * @param layout the shape of the grid, which must be the same size as the puzzle
+   * @return whether the grid was solved, is still partial, or can't be solved
+   */
+  static Outcome fill(int[][] grid, SudokuLayout layout) {
+    int size = grid.length;
+    if (size > MAX_SIZE) {
+      // too big for the masks, so leave it all to choco
+      return Outcome.PARTIAL;
+    }
+    long all = size == MAX_SIZE ? -1L : (1L << size) - 1;
+
+    // the values already in each row, column and region
+    long[] rows = new long[size];
+    long[] columns = new long[size];
+    long[] regions = new long[size];
+
+    int unknown = 0;
+    for (int row = 0; row != size; row++) {
+      for (int col = 0; col != size; col++) {
+        int value = grid[row][col];
+        if (value == 0) {
+          unknown++;
+        } else if (!place(rows, columns, regions, layout, row, col, 1L << (value - 1))) {
+          return Outcome.CONTRADICTION;
+        }
+      }
+    }
+
+    boolean changed = true;
+    while (changed && unknown != 0) {
+      changed = false;
+
+      // naked singles
+      for (int row = 0; row != size; row++) {
+        for (int col = 0; col != size; col++) {
+          if (grid[row][col] != 0) {
+            continue;
+          }
+          long candidates = all & ~(rows[row] | columns[col] | regions[layout.regionOf(row * size + col)]);
+          if (candidates == 0) {
+            return Outcome.CONTRADICTION;
+          }
+          if (Long.bitCount(candidates) == 1) {
+            place(rows, columns, regions, layout, row, col, candidates);
+            grid[row][col] = Long.numberOfTrailingZeros(candidates) + 1;
+            unknown--;
+            changed = true;
+          }
+        }
+      }
+
+      // hidden singles, in each row, column and region
+      for (int unit = 0; unit != size && unknown != 0; unit++) {
+        int inRow = hiddenSingles(grid, layout.row(unit), all, rows, columns, regions, layout);
+        int inColumn = hiddenSingles(grid, layout.column(unit), all, rows, columns, regions, layout);
+        int inRegion = hiddenSingles(grid, layout.region(unit), all, rows, columns, regions, layout);
+        if (inRow < 0 || inColumn < 0 || inRegion < 0) {
+          return Outcome.CONTRADICTION;
+        }
+        unknown -= inRow + inColumn + inRegion;
+        changed |= inRow + inColumn + inRegion != 0;
+      }
+    }
+    return unknown == 0 ? Outcome.SOLVED : Outcome.PARTIAL;
+  }
+
+
+  /**
+   * Fill in the values that can only go in one of the cells of a row, column or region
+   *
+   * @return how many cells were filled, or a negative number if some value has nowhere left to go
+   */
+  private static int hiddenSingles(int[][] grid, int[] cells, long all, long[] rows, long[] columns,
+                                   long[] regions, SudokuLayout layout) {
+    int size = grid.length;
+
+    // the values that can go in at least one cell, and in at least two
+    long once = 0;
+    long twice = 0;
+    long placed = 0;
+    for (int cell : cells) {
+      int row = cell / size;
+      int col = cell % size;
+      if (grid[row][col] != 0) {
+        placed |= 1L << (grid[row][col] - 1);
+        continue;
+      }
+      long candidates = all & ~(rows[row] | columns[col] | regions[layout.regionOf(row * size + col)]);
+      twice |= once & candidates;
+      once |= candidates;
+    }
+    if ((once | placed) != all) {
+      return -1;
+    }
+
+    long singles = once & ~twice;
+    int filled = 0;
+    while (singles != 0) {
+      long value = Long.lowestOneBit(singles);
+      singles ^= value;
+      for (int cell : cells) {
+        int row = cell / size;
+        int col = cell % size;
+        if (grid[row][col] != 0) {
+          continue;
+        }
+        long candidates = all & ~(rows[row] | columns[col] | regions[layout.regionOf(row * size + col)]);
+        if ((candidates & value) != 0) {
+          // this cell might have been the only place for another value too, in which case that value now has
+          // nowhere to go, which we'll find on the next pass
+          place(rows, columns, regions, layout, row, col, value);
+          grid[row][col] = Long.numberOfTrailingZeros(value) + 1;
+          filled++;
+          break;
+        }
+      }
+    }
+    return filled;
+  }
+
+
+  /**
+   * Add a value to the masks of its row, column and region
+   *
+   * @return false if one of them already had it
+   */
+  private static boolean place(long[] rows, long[] columns, long[] regions, SudokuLayout layout, int row, int col,
+                               long value) {
+    int region = layout.regionOf(row * rows.length + col);
+    if (((rows[row] | columns[col] | regions[region]) & value) != 0) {
+      return false;
+    }
+    rows[row] |= value;
+    columns[col] |= value;
+    regions[region] |= value;
+    return true;
+  }
+}
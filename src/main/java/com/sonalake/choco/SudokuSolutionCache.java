@@ -0,0 +1,79 @@
+package com.sonalake.choco;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.function.BiPredicate;
+
+/**
+ * A cache of sudoku solutions, so a puzzle we've seen before doesn't have to be solved again. It's keyed on the
+ * {@link SudokuCanonicalForm} of the puzzle, so as well as the exact same puzzle, it will also answer any
+ * shuffled copy of it: values relabelled, rows / bands / columns / stacks swapped, or the grid transposed.
+ * <p>
+ * We store the canonical solution, and map it back to each puzzle that asks for it. Only 9x9 puzzles are cached,
+ * other sizes go straight to the solver.
+ * <p>
+ * The cache is bounded, dropping the least recently used solutions first, and can be shared between threads.
+ */
+final class SudokuSolutionCache {
+
+  // what we store for puzzles with no solution
+  private static final int[][] NO_SOLUTION = new int[0][];
+
+  private final Cache<String, int[][]> solutions;
+
+  /**
+   * @param maximumSize the most solutions to keep
+   */
+  SudokuSolutionCache(long maximumSize) {
+    this.solutions = CacheBuilder.newBuilder()
+      .maximumSize(maximumSize)
+      .recordStats()
+      .build();
+  }
+
+
+  /**
+   * Solve the puzzle from the cache if we can, otherwise with the engine, and then cache the result
+   *
+   * @param predefinedRows the predefined values, 0 means unknown
+   * @param solution       where the solution will be written, in the form of [row][column]
+   * @param solver         what solves the puzzle if it isn't cached, such as an engine's solve method. It's given
+   *                       the puzzle and where to write the solution
+   * @return true if there was a solution, false otherwise
+   */
+  boolean solve(int[][] predefinedRows, int[][] solution, BiPredicate<int[][], int[][]> solver) {
+    if (!SudokuCanonicalForm.canForm(predefinedRows)) {
+      // only 9x9 puzzles are cached, and only the ones that don't obviously have no solution
+      return solver.test(predefinedRows, solution);
+    }
+
+    SudokuCanonicalForm form = SudokuCanonicalForm.of(predefinedRows);
+    int[][] canonical = solutions.getIfPresent(form.key());
+    if (canonical != null) {
+      if (canonical == NO_SOLUTION) {
+        return false;
+      }
+      form.fromCanonical(canonical, solution);
+      return true;
+    }
+
+    boolean solved = solver.test(predefinedRows, solution);
+    solutions.put(form.key(), solved ? form.toCanonical(solution) : NO_SOLUTION);
+    return solved;
+  }
+
+  /**
+   * @return how many puzzles were answered from the cache
+   */
+  long hits() {
+    return solutions.stats().hitCount();
+  }
+
+  /**
+   * @return how many puzzles had to be solved
+   */
+  long misses() {
+    return solutions.stats().missCount();
+  }
+}
@@ -0,0 +1,166 @@
+package com.sonalake.choco;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+
+/**
+ * The rules of a sudoku puzzle, on top of every row and column having different values:
+ * <p>
+ * - the regions that also need different values: the usual squares, or any shape for a jigsaw
+ * - the cages of a killer sudoku, if there are any, each of which has different values that add up to its total
+ * <p>
+ * In the one-line format, a variant is written after the puzzle as fields separated by whitespace:
+ * <p>
+ * - {@code regions=...}: the region of each cell going in rows, one character per cell, with the regions
+ * written in the same way as values (1-9, then A-Z, then a-z)
+ * - {@code cages=...}: each cage as its total, a colon and then its cells numbered from 0 going in rows,
+ * separated by commas, with the cages separated by semicolons, e.g. {@code cages=3:0,1;15:2,3,4}
+ * <p>
+ * A variant never changes once it's made, so the same one can be shared between threads.
+ */
+final class SudokuVariant {
+
+  private static final Map<Integer, SudokuVariant> CLASSICS = new ConcurrentHashMap<>();
+
+  private final SudokuLayout layout;
+  private final List<SudokuCage> cages;
+
+  /**
+   * @param layout the shape of the grid
+   * @param cages  the cages, which can't overlap, or an empty list if there are none
+   */
+  SudokuVariant(SudokuLayout layout, List<SudokuCage> cages) {
+    boolean[] caged = new boolean[layout.cellCount()];
+    for (SudokuCage cage : cages) {
+      cage.checkFits(layout.size());
+      for (int cell : cage.cells()) {
+        if (caged[cell]) {
+          throw new IllegalArgumentException(format("Cell %s is in more than one cage", cell));
+        }
+        caged[cell] = true;
+      }
+    }
+    this.layout = layout;
+    this.cages = Collections.unmodifiableList(new ArrayList<>(cages));
+  }
+
+
+  /**
+   * Get the variant for a classic puzzle, with the usual squares and no cages
+   *
+   * @param size the number of cells in a row
+   * @return the variant
+   */
+  static SudokuVariant classic(int size) {
+    SudokuVariant classic = CLASSICS.get(size);
+    if (classic != null) {
+      return classic;
+    }
+    SudokuLayout layout = SudokuLayout.of(size);
+    return CLASSICS.computeIfAbsent(size, s -> new SudokuVariant(layout, Collections.emptyList()));
+  }
+
+
+  /**
+   * Read a variant from the fields that follow a puzzle in the one-line format
+   *
+   * @param size   the number of cells in a row of the puzzle
+   * @param fields the fields, separated by whitespace. If there are none then this is a classic puzzle
+   * @return the variant
+   */
+  static SudokuVariant parse(int size, CharSequence fields) {
+    SudokuLayout layout = SudokuLayout.of(size);
+    List<SudokuCage> cages = new ArrayList<>();
+    for (String field : fields.toString().trim().split("\\s+")) {
+      if (field.isEmpty()) {
+        continue;
+      }
+      if (field.startsWith("regions=")) {
+        layout = parseRegions(size, field.substring("regions=".length()));
+      } else if (field.startsWith("cages=")) {
+        cages.addAll(parseCages(field.substring("cages=".length())));
+      } else {
+        throw new IllegalArgumentException(format("Unexpected field '%s'", field));
+      }
+    }
+    return layout.isStandard() && cages.isEmpty() ? classic(size) : new SudokuVariant(layout, cages);
+  }
+
+  private static SudokuLayout parseRegions(int size, String regions) {
+    if (regions.length() != size * size) {
+      throw new IllegalArgumentException(format("Expected %s regions, but there are %s", size * size,
+        regions.length()));
+    }
+    int[] regionOf = new int[regions.length()];
+    for (int cell = 0; cell != regionOf.length; cell++) {
+      regionOf[cell] = Sudoku.SYMBOLS.indexOf(regions.charAt(cell));
+    }
+    return SudokuLayout.jigsaw(regionOf);
+  }
+
+  private static List<SudokuCage> parseCages(String text) {
+    List<SudokuCage> cages = new ArrayList<>();
+    for (String cage : text.split(";")) {
+      int colon = cage.indexOf(':');
+      if (colon < 0) {
+        throw new IllegalArgumentException(format("Expected total:cells, but got '%s'", cage));
+      }
+      String[] cellNames = cage.substring(colon + 1).split(",");
+      int[] cells = new int[cellNames.length];
+      for (int i = 0; i != cells.length; i++) {
+        cells[i] = Integer.parseInt(cellNames[i]);
+      }
+      cages.add(new SudokuCage(Integer.parseInt(cage.substring(0, colon)), cells));
+    }
+    return cages;
+  }
+
+
+  /**
+   * @return the shape of the grid
+   */
+  SudokuLayout layout() {
+    return layout;
+  }
+
+  /**
+   * @return the cages, or an empty list if there are none
+   */
+  List<SudokuCage> cages() {
+    return cages;
+  }
+
+  /**
+   * @return true if this is a classic puzzle, with the usual squares and no cages
+   */
+  boolean isClassic() {
+    return layout.isStandard() && cages.isEmpty();
+  }
+
+
+  /**
+   * @return the fields for the one-line format, or an empty string for a classic puzzle
+   */
+  @Override
+  public String toString() {
+    StringBuilder fields = new StringBuilder();
+    if (!layout.isStandard()) {
+      fields.append("regions=");
+      for (int cell = 0; cell != layout.cellCount(); cell++) {
+        fields.append(Sudoku.SYMBOLS.charAt(layout.regionOf(cell)));
+      }
+    }
+    if (!cages.isEmpty()) {
+      fields.append(fields.length() == 0 ? "" : " ").append("cages=");
+      for (int i = 0; i != cages.size(); i++) {
+        fields.append(i == 0 ? "" : ";").append(cages.get(i));
+      }
+    }
+    return fields.toString();
+  }
+}
@@ -0,0 +1,107 @@
+package com.sonalake.choco;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes sudoku grids out in the one-line format, straight into a byte buffer that's reused for the whole run.
+ * <p>
+ * This is for the batch tools, where the output can be millions of lines: each cell is written as a single
+ * byte looked up from a table, so there are no strings, builders or encoders per line, and nothing is
+ * allocated once the writer is made. The buffer is only handed to the channel when it's full, or on a flush.
+ * <p>
+ * For looking at a single grid, {@link Sudoku}'s AsciiTable view is still the nicer option.
+ * <p>
+ * A writer is not thread safe.
+ */
+final class SudokuWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // the byte for each value, with unknowns (0) written as a dot
+  private static final byte[] SYMBOLS = symbols();
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  /**
+   * @param channel where the lines are written, this is closed along with the writer
+   */
+  SudokuWriter(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+
+  /**
+   * Write a grid, with one byte per cell going in rows. This doesn't end the line.
+   *
+   * @param grid the values in the form of [row][column], 0 means unknown
+   */
+  void write(int[][] grid) throws IOException {
+    for (int[] row : grid) {
+      ensureRoom(row.length);
+      for (int value : row) {
+        buffer.put(SYMBOLS[value]);
+      }
+    }
+  }
+
+  /**
+   * Write a space, and then a word, e.g. the name of an enum. The word must be plain ASCII.
+   *
+   * @param word the word to write
+   */
+  void writeField(CharSequence word) throws IOException {
+    ensureRoom(word.length() + 1);
+    buffer.put((byte) ' ');
+    for (int i = 0; i != word.length(); i++) {
+      buffer.put((byte) word.charAt(i));
+    }
+  }
+
+  /**
+   * End the current line
+   */
+  void endLine() throws IOException {
+    ensureRoom(1);
+    buffer.put((byte) '\n');
+  }
+
+  /**
+   * Write out everything that's in the buffer
+   */
+  void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+
+  private void ensureRoom(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+
+  private static byte[] symbols() {
+    byte[] symbols = new byte[Sudoku.SYMBOLS.length() + 1];
+    symbols[0] = '.';
+    for (int i = 0; i != Sudoku.SYMBOLS.length(); i++) {
+      symbols[i + 1] = (byte) Sudoku.SYMBOLS.charAt(i);
+    }
+    return symbols;
+  }
+}
@@ -0,0 +1,94 @@
+package com.sonalake.choco;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.SimpleGraph;
+
+/**
+ * Graphs from the DIMACS colouring benchmarks, for comparing the different ways of building a
+ * {@link GraphColouring} model. The families we use can be built from their definitions, so they're made here
+ * rather than kept as files; each is the same graph, with the same numbering, as the DIMACS .col file of the
+ * same name.
+ * <p>
+ * - the Mycielski graphs have no triangles, but need one more colour with each step, so a clique says nothing
+ * about how many colours they need
+ * - the queen graphs join the squares of a chess board that a queen can move between, so every row, column and
+ * diagonal is a clique
+ */
+enum ColouringCorpus {
+
+  // 11 vertices, 20 edges, 4 colours
+  MYCIEL3,
+  // 23 vertices, 71 edges, 5 colours
+  MYCIEL4,
+  // 47 vertices, 236 edges, 6 colours
+  MYCIEL5,
+  // 25 vertices, 160 edges, 5 colours
+  QUEEN5_5,
+  // 36 vertices, 290 edges, 7 colours
+  QUEEN6_6,
+  // 49 vertices, 476 edges, 7 colours
+  QUEEN7_7,
+  // 64 vertices, 728 edges, 9 colours
+  QUEEN8_8;
+
+  /**
+   * @return the graph, with its vertices numbered from 0
+   */
+  Graph<Integer, DefaultEdge> graph() {
+    String name = name();
+    if (name.startsWith("MYCIEL")) {
+      return mycielski(Integer.parseInt(name.substring("MYCIEL".length())));
+    }
+    return queen(Integer.parseInt(name.substring(name.indexOf('_') + 1)));
+  }
+
+
+  /**
+   * Build the Mycielski graph that DIMACS calls myciel{@code k}: starting from a single edge, each step adds a
+   * shadow of each vertex, joined to the neighbours of the vertex, and then one more vertex joined to all the
+   * shadows
+   */
+  private static Graph<Integer, DefaultEdge> mycielski(int k) {
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    graph.addVertex(0);
+    graph.addVertex(1);
+    graph.addEdge(0, 1);
+    for (int step = 1; step != k; step++) {
+      int n = graph.vertexSet().size();
+      for (int vertex = n; vertex != 2 * n + 1; vertex++) {
+        graph.addVertex(vertex);
+      }
+      for (DefaultEdge edge : graph.edgeSet().toArray(new DefaultEdge[0])) {
+        int from = graph.getEdgeSource(edge);
+        int to = graph.getEdgeTarget(edge);
+        graph.addEdge(n + from, to);
+        graph.addEdge(n + to, from);
+      }
+      for (int shadow = n; shadow != 2 * n; shadow++) {
+        graph.addEdge(shadow, 2 * n);
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Build the graph that DIMACS calls queen{@code n}_{@code n}, with the squares numbered going in rows
+   */
+  private static Graph<Integer, DefaultEdge> queen(int n) {
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    for (int square = 0; square != n * n; square++) {
+      graph.addVertex(square);
+    }
+    for (int from = 0; from != n * n; from++) {
+      for (int to = from + 1; to != n * n; to++) {
+        int rows = Math.abs(from / n - to / n);
+        int cols = Math.abs(from % n - to % n);
+        if (rows == 0 || cols == 0 || rows == cols) {
+          graph.addEdge(from, to);
+        }
+      }
+    }
+    return graph;
+  }
+}
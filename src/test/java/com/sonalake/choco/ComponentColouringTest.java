@@ -0,0 +1,163 @@
+package com.sonalake.choco;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.SimpleGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ComponentColouringTest {
+
+  @Test
+  void placesEachClassOnItsOwnColour() {
+    // a component with classes of 3, 2 and 1 vertices, into colours that already have 1, 0 and 2
+    int[] local = {1, 2, 1, 3, 2, 1};
+    int[] usage = {0, 1, 0, 2, 0, 0, 0};
+
+    int[] evenly = ComponentColouring.placeClasses(local, usage.clone(), 4, 3, true);
+    // biggest class first, each on the emptiest colour it fits in
+    assertArrayEquals(new int[]{0, 2, 1, 3}, evenly);
+
+    int[] tightly = ComponentColouring.placeClasses(local, usage.clone(), 4, 3, false);
+    // the biggest class only fits in the first two, and the fullest is taken each time
+    assertArrayEquals(new int[]{0, 1, 3, 2}, tightly);
+  }
+
+  @Test
+  void goesPastTheTargetWhenTheCapIsReached() {
+    int[] local = {1, 1, 2};
+    int[] usage = {0, 2, 2, 0, 0, 0};
+
+    int[] global = ComponentColouring.placeClasses(local, usage, 2, 2, true);
+    assertEquals(3, global[1]);
+    assertEquals(4, global[2]);
+    assertArrayEquals(new int[]{0, 2, 2, 2, 1, 0}, usage);
+  }
+
+  @Test
+  void cappedMergesAreValid() {
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    List<int[]> members = new ArrayList<>();
+    List<int[]> colourings = new ArrayList<>();
+    // three triangles, a path and two vertices on their own, each coloured from 1
+    addComponent(graph, members, colourings, new int[][]{{0, 1}, {1, 2}, {2, 0}}, 3, new int[]{1, 2, 3});
+    addComponent(graph, members, colourings, new int[][]{{0, 1}, {1, 2}, {2, 0}}, 3, new int[]{1, 2, 3});
+    addComponent(graph, members, colourings, new int[][]{{0, 1}, {1, 2}, {2, 0}}, 3, new int[]{3, 1, 2});
+    addComponent(graph, members, colourings, new int[][]{{0, 1}, {1, 2}, {2, 3}}, 4, new int[]{1, 2, 1, 2});
+    addComponent(graph, members, colourings, new int[0][], 1, new int[]{1});
+    addComponent(graph, members, colourings, new int[0][], 1, new int[]{1});
+    int vertexCount = graph.vertexSet().size();
+
+    // the path's colouring has classes of two, so it's only a valid colouring for a cap of two or more
+    for (int cap = 2; cap <= vertexCount; cap++) {
+      int target = Math.max(3, (vertexCount + cap - 1) / cap);
+      for (boolean evenly : new boolean[]{true, false}) {
+        ColouringSolution solution = ComponentColouring.merge(vertexCount, members, colourings, cap, target,
+          evenly);
+        assertValid(graph, cap, solution);
+        assertTrue(solution.colourCount() >= target);
+        if (cap >= 6) {
+          // the colours the triangles need have room for every class, so the cap doesn't cost any more
+          assertEquals(3, solution.colourCount());
+        }
+      }
+    }
+  }
+
+  @Test
+  void usesAsManyColoursAsTheWorstComponentWithoutACap() {
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    addComponent(graph, new ArrayList<>(), new ArrayList<>(),
+      new int[][]{{0, 1}, {0, 2}, {0, 3}, {1, 2}, {1, 3}, {2, 3}}, 4, null);
+    addComponent(graph, new ArrayList<>(), new ArrayList<>(), new int[][]{{0, 1}, {1, 2}, {2, 0}}, 3, null);
+    addComponent(graph, new ArrayList<>(), new ArrayList<>(), new int[][]{{0, 1}}, 2, null);
+    addComponent(graph, new ArrayList<>(), new ArrayList<>(), new int[0][], 1, null);
+    addPetersen(graph, 5);
+
+    ColouringSolution solution = ComponentColouring.solve(graph, graph.vertexSet().size(),
+      ColouringConfig.DEFAULT, 0, ForkJoinPool.commonPool());
+    assertValid(graph, graph.vertexSet().size(), solution);
+    assertEquals(4, solution.colourCount());
+  }
+
+  @Test
+  void solvedCappedColouringsAreValid() {
+    Graph<Integer, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+    addPetersen(graph, 4);
+    addPetersen(graph, 5);
+    addPetersen(graph, 6);
+    addComponent(graph, new ArrayList<>(), new ArrayList<>(), new int[][]{{0, 1}, {1, 2}, {2, 0}}, 3, null);
+    int vertexCount = graph.vertexSet().size();
+
+    for (int cap : new int[]{2, 3, 5, 8}) {
+      ColouringSolution solution = ComponentColouring.solve(graph, cap, ColouringConfig.DEFAULT, 0,
+        ForkJoinPool.commonPool());
+      assertValid(graph, cap, solution);
+      assertTrue(solution.colourCount() >= (vertexCount + cap - 1) / cap);
+    }
+  }
+
+
+  /**
+   * Check no edge has the same colour at both ends, no colour is used more than the cap, and the counts add up
+   */
+  private static void assertValid(Graph<Integer, DefaultEdge> graph, int cap, ColouringSolution solution) {
+    for (DefaultEdge edge : graph.edgeSet()) {
+      assertNotEquals(solution.colour(graph.getEdgeSource(edge)), solution.colour(graph.getEdgeTarget(edge)));
+    }
+    int[] colours = solution.colours();
+    int[] counts = new int[colours.length + 1];
+    Set<Integer> distinct = new HashSet<>();
+    for (int colour : colours) {
+      assertTrue(colour >= 1);
+      counts[colour]++;
+      distinct.add(colour);
+    }
+    for (int colour = 1; colour != counts.length; colour++) {
+      assertTrue(counts[colour] <= cap);
+      assertEquals(counts[colour], solution.usage(colour));
+    }
+    assertEquals(distinct.size(), solution.colourCount());
+  }
+
+  /**
+   * Add a component to the graph, with its vertices numbered after those already there
+   *
+   * @param local the colour of each of its vertices, or null if it's not needed
+   */
+  private static void addComponent(Graph<Integer, DefaultEdge> graph, List<int[]> members, List<int[]> colourings,
+                                   int[][] edges, int vertexCount, int[] local) {
+    int first = graph.vertexSet().size();
+    int[] vertices = new int[vertexCount];
+    for (int v = 0; v != vertexCount; v++) {
+      vertices[v] = first + v;
+      graph.addVertex(first + v);
+    }
+    for (int[] edge : edges) {
+      graph.addEdge(first + edge[0], first + edge[1]);
+    }
+    members.add(vertices);
+    colourings.add(local == null ? null : Arrays.copyOf(local, local.length));
+  }
+
+  private static void addPetersen(Graph<Integer, DefaultEdge> graph, int n) {
+    Graph<Integer, DefaultEdge> petersen = GraphColouring.petersen(n);
+    int[][] edges = new int[petersen.edgeSet().size()][];
+    int i = 0;
+    for (DefaultEdge edge : petersen.edgeSet()) {
+      edges[i++] = new int[]{petersen.getEdgeSource(edge), petersen.getEdgeTarget(edge)};
+    }
+    addComponent(graph, new ArrayList<>(), new ArrayList<>(), edges, petersen.vertexSet().size(), null);
+  }
+}
@@ -0,0 +1,158 @@
+package com.sonalake.choco;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GraphReaderTest {
+
+  private static final String DIRECTED_DOT = "digraph G {\n"
+    + "  a -> b;\n"
+    + "  b -> a;\n"
+    + "  a -> a;\n"
+    + "  b -> c;\n"
+    + "}\n";
+
+  private static final String DIRECTED_GRAPHML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+    + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"
+    + "  <graph id=\"G\" edgedefault=\"directed\">\n"
+    + "    <node id=\"a\"/>\n"
+    + "    <node id=\"b\"/>\n"
+    + "    <node id=\"c\"/>\n"
+    + "    <edge source=\"a\" target=\"b\"/>\n"
+    + "    <edge source=\"b\" target=\"a\"/>\n"
+    + "    <edge source=\"a\" target=\"a\"/>\n"
+    + "    <edge source=\"b\" target=\"c\"/>\n"
+    + "  </graph>\n"
+    + "</graphml>\n";
+
+  @Test
+  void readsDimacs() throws IOException {
+    Graph<Integer, DefaultEdge> graph = GraphReader.readDimacs(bytes("c a triangle, and a vertex on its own\r\n"
+      + "p edge 4 3\r\n"
+      + "\r\n"
+      + "e 1 2\r\n"
+      + "e 2 3\r\n"
+      + "e 3 1\r\n"));
+    assertEquals(4, graph.vertexSet().size());
+    assertEquals(3, graph.edgeSet().size());
+    assertTrue(graph.containsEdge(0, 1));
+    assertTrue(graph.containsEdge(1, 2));
+    assertTrue(graph.containsEdge(2, 0));
+    assertEquals(0, graph.degreeOf(3));
+  }
+
+  @Test
+  void dropsDimacsLoopsAndRepeats() throws IOException {
+    Graph<Integer, DefaultEdge> graph = GraphReader.readDimacs(bytes("p col 3 3\ne 1 1\ne 1 2\ne 2 1\n"));
+    assertEquals(3, graph.vertexSet().size());
+    assertEquals(1, graph.edgeSet().size());
+    assertFalse(graph.containsEdge(0, 0));
+  }
+
+  @Test
+  void rejectsBadDimacs() {
+    assertError("At line 1: an edge comes before the p line", "e 1 2\np edge 2 1\n");
+    assertError("At line 2: the edge 1-3 has a vertex that isn't between 1 and 2", "p edge 2 1\ne 1 3\n");
+    assertError("At line 2: the edge 0-1 has a vertex that isn't between 1 and 2", "p edge 2 1\ne 0 1\n");
+    assertError("At line 2: expected a number", "p edge 2 1\ne 1\n");
+    assertError("At line 2: unexpected character 'x'", "p edge 2 1\ne 1 x\n");
+    assertError("At line 3: unexpected line type 'q'", "c\np edge 2 1\nq\n");
+    assertError("At line 1: the number is too big", "p edge 99999999999 1\n");
+    assertError("At line 2: there's no p line", "c nothing here\n");
+  }
+
+  @Test
+  void readsEdgeLists() throws IOException {
+    Graph<Integer, DefaultEdge> graph = GraphReader.readEdgeList(bytes("# the vertices can be any numbers\n"
+      + "10 20\n"
+      + "\n"
+      + "% and can have weights\n"
+      + "  20\t30 1.5\r\n"
+      + "30 10"));
+    assertEquals(3, graph.vertexSet().size());
+    assertEquals(3, graph.edgeSet().size());
+    // numbered in the order they're first seen
+    assertTrue(graph.containsEdge(0, 1));
+    assertTrue(graph.containsEdge(1, 2));
+    assertTrue(graph.containsEdge(2, 0));
+  }
+
+  @Test
+  void keepsTheVertexOfAnEdgeListLoop() throws IOException {
+    Graph<Integer, DefaultEdge> graph = GraphReader.readEdgeList(bytes("5 5\n5 7\n7 5\n"));
+    assertEquals(2, graph.vertexSet().size());
+    assertEquals(1, graph.edgeSet().size());
+  }
+
+  @Test
+  void rejectsBadEdgeLists() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+      () -> GraphReader.readEdgeList(bytes("1 2\n2 three\n")));
+    assertEquals("At line 2: unexpected character 't'", e.getMessage());
+
+    e = assertThrows(IllegalArgumentException.class, () -> GraphReader.readEdgeList(bytes("1 2\n\n-1 2\n")));
+    assertEquals("At line 3: unexpected character '-'", e.getMessage());
+
+    e = assertThrows(IllegalArgumentException.class, () -> GraphReader.readEdgeList(bytes("1\n")));
+    assertEquals("At line 1: expected a number", e.getMessage());
+  }
+
+  @Test
+  void foldsDirectedDot() {
+    assertFolded(GraphReader.readDot(new StringReader(DIRECTED_DOT)));
+  }
+
+  @Test
+  void foldsDirectedGraphMl() {
+    assertFolded(GraphReader.readGraphMl(new StringReader(DIRECTED_GRAPHML)));
+  }
+
+  @Test
+  void picksTheFormatFromTheExtension(@TempDir Path folder) throws IOException {
+    assertFolded(GraphReader.read(write(folder.resolve("g.gv"), DIRECTED_DOT)));
+    assertFolded(GraphReader.read(write(folder.resolve("g.GraphML"), DIRECTED_GRAPHML)));
+    assertEquals(3, GraphReader.read(write(folder.resolve("g.col"), "p edge 3 1\ne 1 2\n")).vertexSet().size());
+    assertEquals(2, GraphReader.read(write(folder.resolve("g.txt"), "1 2\n")).vertexSet().size());
+  }
+
+
+  /**
+   * The directed graph, with its edge both ways and its loop, is a path of three vertices once folded
+   */
+  private static void assertFolded(Graph<Integer, DefaultEdge> graph) {
+    assertFalse(graph.getType().isDirected());
+    assertEquals(3, graph.vertexSet().size());
+    assertEquals(2, graph.edgeSet().size());
+    assertTrue(graph.containsEdge(0, 1));
+    assertTrue(graph.containsEdge(1, 0));
+    assertTrue(graph.containsEdge(1, 2));
+  }
+
+  private static void assertError(String message, String dimacs) {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+      () -> GraphReader.readDimacs(bytes(dimacs)));
+    assertEquals(message, e.getMessage());
+  }
+
+  private static ByteArrayInputStream bytes(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Path write(Path file, String text) throws IOException {
+    return Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+  }
+}
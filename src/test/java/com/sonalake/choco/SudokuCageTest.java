@@ -0,0 +1,61 @@
+package com.sonalake.choco;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.variables.IntVar;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class SudokuCageTest {
+
+  @Test
+  void refusesTotalsTheCellsCantAddUpTo() {
+    // two cells of a 9x9 grid add up to anything from 1 + 2 to 8 + 9
+    new SudokuCage(3, 0, 1).checkFits(9);
+    new SudokuCage(17, 0, 1).checkFits(9);
+    assertThrows(IllegalArgumentException.class, () -> new SudokuCage(2, 0, 1).checkFits(9));
+    assertThrows(IllegalArgumentException.class, () -> new SudokuCage(18, 0, 1).checkFits(9));
+    assertThrows(IllegalArgumentException.class, () -> new SudokuCage(1000, 0, 1).checkFits(9));
+
+    // and there aren't ten different values to go in ten cells
+    assertThrows(IllegalArgumentException.class, () -> new SudokuCage(55, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9)
+      .checkFits(9));
+
+    // which the variants check for
+    assertThrows(IllegalArgumentException.class, () -> SudokuVariant.parse(9, " cages=1000:0,1,2"));
+  }
+
+  @Test
+  void smallCagesGetATable() {
+    List<Constraint> constraints = constraints(9, new SudokuCage(3, 0, 1));
+    assertEquals(1, constraints.size());
+  }
+
+  @Test
+  void bigCagesOfBigGridsGiveUpOnATableQuickly() {
+    // 14 cells of a 36x36 grid, adding up to the least and the most they can, and about half way between
+    int[] cells = new int[14];
+    for (int i = 0; i != cells.length; i++) {
+      cells[i] = i;
+    }
+    for (int total : new int[]{105, 106, 259, 412, 413}) {
+      SudokuCage cage = new SudokuCage(total, cells);
+      cage.checkFits(36);
+      assertTimeoutPreemptively(Duration.ofSeconds(5), () -> constraints(36, cage));
+    }
+    assertEquals(2, constraints(36, new SudokuCage(259, cells)).size());
+  }
+
+
+  private static List<Constraint> constraints(int size, SudokuCage cage) {
+    Model model = new Model();
+    IntVar[][] grid = Sudoku.buildGrid(model, new int[size][size]);
+    return cage.constraints(model, grid, SudokuConfig.Consistency.DEFAULT);
+  }
+}
@@ -0,0 +1,176 @@
+package com.sonalake.choco;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SudokuCanonicalFormTest {
+
+  @Test
+  void shuffledCopiesHaveTheSameKey() {
+    Random random = new Random(0);
+    for (int[][] puzzle : corpus()) {
+      String key = SudokuCanonicalForm.of(puzzle).key();
+      for (int copy = 0; copy != 5; copy++) {
+        assertEquals(key, SudokuCanonicalForm.of(shuffle(puzzle, random)).key());
+      }
+    }
+  }
+
+  @Test
+  void solutionsMapToTheCanonicalFormAndBack() {
+    for (int[][] puzzle : corpus()) {
+      int[][] solution = Sudoku.solve(puzzle);
+      if (solution == null) {
+        continue;
+      }
+      SudokuCanonicalForm form = SudokuCanonicalForm.of(puzzle);
+      int[][] back = new int[9][9];
+      form.fromCanonical(form.toCanonical(solution), back);
+      assertArrayEquals(solution, back);
+    }
+  }
+
+  @Test
+  void shuffledCopiesAreAnsweredFromTheCache() {
+    SudokuSolutionCache cache = new SudokuSolutionCache(1000);
+    SudokuEngine engine = new SudokuEngine(9);
+    AtomicInteger solves = new AtomicInteger();
+    Random random = new Random(1);
+
+    List<int[][]> puzzles = corpus();
+    for (int[][] puzzle : puzzles) {
+      cache.solve(puzzle, new int[9][9], engine::solve);
+    }
+    solves.set(0);
+    for (int[][] puzzle : puzzles) {
+      int[][] copy = shuffle(puzzle, random);
+      int[][] solution = new int[9][9];
+      boolean solved = cache.solve(copy, solution, (p, s) -> {
+        solves.incrementAndGet();
+        return engine.solve(p, s);
+      });
+      if (solved) {
+        assertSolves(copy, solution);
+      }
+    }
+    assertEquals(0, solves.get());
+    assertEquals(puzzles.size(), cache.hits());
+  }
+
+  @Test
+  void repeatedValuesHaveNoForm() {
+    int[][] puzzle = new int[9][9];
+    assertTrue(SudokuCanonicalForm.canForm(puzzle));
+
+    puzzle[0][0] = 5;
+    puzzle[0][8] = 5;
+    assertFalse(SudokuCanonicalForm.canForm(puzzle));
+    assertThrows(IllegalArgumentException.class, () -> SudokuCanonicalForm.of(puzzle));
+
+    puzzle[0][8] = 0;
+    puzzle[8][0] = 5;
+    assertFalse(SudokuCanonicalForm.canForm(puzzle));
+
+    assertFalse(SudokuCanonicalForm.canForm(new int[16][16]));
+  }
+
+  @Test
+  void repeatedValuesGoStraightToTheSolver() {
+    SudokuSolutionCache cache = new SudokuSolutionCache(10);
+    int[][] puzzle = new int[9][9];
+    puzzle[3][1] = 2;
+    puzzle[3][7] = 2;
+    AtomicInteger solves = new AtomicInteger();
+    for (int i = 0; i != 2; i++) {
+      assertFalse(cache.solve(puzzle, new int[9][9], (p, s) -> solves.incrementAndGet() < 0));
+    }
+    assertEquals(2, solves.get());
+    assertEquals(0, cache.hits() + cache.misses());
+  }
+
+
+  private static List<int[][]> corpus() {
+    List<int[][]> puzzles = new ArrayList<>();
+    for (SudokuCorpus corpus : SudokuCorpus.values()) {
+      puzzles.addAll(corpus.puzzles());
+    }
+    return puzzles;
+  }
+
+  /**
+   * @return a copy of the puzzle with its values relabelled, its bands, rows, stacks and columns swapped, and
+   * maybe transposed
+   */
+  private static int[][] shuffle(int[][] puzzle, Random random) {
+    int[] labels = permutation(10, 1, random);
+    int[] rows = lines(random);
+    int[] columns = lines(random);
+    boolean transpose = random.nextBoolean();
+    int[][] copy = new int[9][9];
+    for (int row = 0; row != 9; row++) {
+      for (int col = 0; col != 9; col++) {
+        int value = transpose ? puzzle[columns[col]][rows[row]] : puzzle[rows[row]][columns[col]];
+        copy[row][col] = value == 0 ? 0 : labels[value];
+      }
+    }
+    return copy;
+  }
+
+  private static int[] lines(Random random) {
+    int[] bands = permutation(3, 0, random);
+    int[] lines = new int[9];
+    for (int band = 0; band != 3; band++) {
+      int[] within = permutation(3, 0, random);
+      for (int i = 0; i != 3; i++) {
+        lines[band * 3 + i] = bands[band] * 3 + within[i];
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * @return the numbers up to count, shuffled, except for the ones below first, which stay where they are
+   */
+  private static int[] permutation(int count, int first, Random random) {
+    int[] values = new int[count];
+    for (int i = 0; i != count; i++) {
+      values[i] = i;
+    }
+    for (int i = count - 1; i > first; i--) {
+      int j = first + random.nextInt(i - first + 1);
+      int swap = values[i];
+      values[i] = values[j];
+      values[j] = swap;
+    }
+    return values;
+  }
+
+  private static void assertSolves(int[][] puzzle, int[][] solution) {
+    for (int i = 0; i != 9; i++) {
+      int row = 0;
+      int column = 0;
+      int square = 0;
+      for (int j = 0; j != 9; j++) {
+        if (puzzle[i][j] != 0) {
+          assertEquals(puzzle[i][j], solution[i][j]);
+        }
+        row |= 1 << solution[i][j];
+        column |= 1 << solution[j][i];
+        square |= 1 << solution[i / 3 * 3 + j / 3][i % 3 * 3 + j % 3];
+      }
+      assertEquals(0x3FE, row);
+      assertEquals(0x3FE, column);
+      assertEquals(0x3FE, square);
+    }
+  }
+}
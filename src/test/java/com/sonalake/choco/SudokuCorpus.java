@@ -0,0 +1,51 @@
+package com.sonalake.choco;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sets of 9x9 puzzles we keep for benchmarking and testing, grouped by how hard they are. These live in the
+ * {@code sudoku} folder of the test resources, one puzzle per line, so they stay out of the application jar.
+ */
+enum SudokuCorpus {
+  // 40 givens
+  EASY("easy.txt"),
+  // 28 givens
+  MEDIUM("medium.txt"),
+  // puzzles that are famous for being hard to solve
+  HARDEST("hardest.txt");
+
+  private final String resource;
+
+  SudokuCorpus(String resource) {
+    this.resource = resource;
+  }
+
+  /**
+   * Read the puzzles in this corpus
+   *
+   * @return the predefined values of each puzzle, in the form of [row][column]
+   */
+  List<int[][]> puzzles() {
+    List<int[][]> puzzles = new ArrayList<>();
+    try (InputStream in = SudokuCorpus.class.getResourceAsStream("/sudoku/" + resource);
+         BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty() && line.charAt(0) != '#') {
+          puzzles.add(Sudoku.parse(line));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return puzzles;
+  }
+}
@@ -0,0 +1,135 @@
+package com.sonalake.choco;
+
+import com.sonalake.choco.SudokuSingles.Outcome;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SudokuSinglesTest {
+
+  // a 4x4 jigsaw, with one of its solutions, whose regions aren't the usual squares
+  private static final int[] JIGSAW = {
+    0, 0, 1, 1,
+    0, 2, 2, 1,
+    0, 2, 2, 1,
+    3, 3, 3, 3
+  };
+  private static final int[][] JIGSAW_SOLUTION = {
+    {1, 2, 3, 4},
+    {3, 1, 4, 2},
+    {4, 3, 2, 1},
+    {2, 4, 1, 3}
+  };
+
+  @Test
+  void onlyFillsCellsWithTheirSolution() {
+    for (SudokuCorpus corpus : SudokuCorpus.values()) {
+      for (int[][] puzzle : corpus.puzzles()) {
+        int[][] solution = Sudoku.solve(puzzle);
+        int[][] grid = copy(puzzle);
+        Outcome outcome = SudokuSingles.fill(grid);
+        if (solution == null) {
+          continue;
+        }
+        assertNotEquals(Outcome.CONTRADICTION, outcome);
+        for (int row = 0; row != 9; row++) {
+          for (int col = 0; col != 9; col++) {
+            if (puzzle[row][col] != 0) {
+              assertEquals(puzzle[row][col], grid[row][col]);
+            } else if (grid[row][col] != 0) {
+              assertEquals(solution[row][col], grid[row][col]);
+            }
+          }
+        }
+        if (outcome == Outcome.SOLVED) {
+          assertArrayEquals(solution, grid);
+        }
+      }
+    }
+  }
+
+  @Test
+  void solvesEasyPuzzles() {
+    int solved = 0;
+    for (int[][] puzzle : SudokuCorpus.EASY.puzzles()) {
+      if (SudokuSingles.fill(copy(puzzle)) == Outcome.SOLVED) {
+        solved++;
+      }
+    }
+    assertTrue(solved > SudokuCorpus.EASY.puzzles().size() / 2);
+  }
+
+  @Test
+  void findsHiddenSingles() {
+    // 1 can't go in the first row's first eight cells, as each of their columns has a 1 further down, but
+    // there are other values that could go in the last cell
+    int[][] grid = new int[9][9];
+    int[] rowOfOne = {1, 3, 6, 2, 4, 7, 5, 8};
+    for (int col = 0; col != 8; col++) {
+      grid[rowOfOne[col]][col] = 1;
+    }
+    assertEquals(Outcome.PARTIAL, SudokuSingles.fill(grid));
+    assertEquals(1, grid[0][8]);
+  }
+
+  @Test
+  void findsRepeatedGivens() {
+    int[][] grid = new int[9][9];
+    grid[0][0] = 4;
+    grid[0][5] = 4;
+    assertEquals(Outcome.CONTRADICTION, SudokuSingles.fill(grid));
+
+    grid = new int[9][9];
+    grid[0][0] = 4;
+    grid[2][2] = 4;
+    assertEquals(Outcome.CONTRADICTION, SudokuSingles.fill(grid));
+  }
+
+  @Test
+  void findsCellsWithNoValueLeft() {
+    // the last cell of the first row can only be 9, but there's a 9 further down its column
+    int[][] grid = new int[9][9];
+    for (int col = 0; col != 8; col++) {
+      grid[0][col] = col + 1;
+    }
+    grid[5][8] = 9;
+    assertEquals(Outcome.CONTRADICTION, SudokuSingles.fill(grid));
+  }
+
+  @Test
+  void usesTheJigsawRegions() {
+    SudokuLayout layout = SudokuLayout.jigsaw(JIGSAW);
+
+    // clear a cell from each row and column, which only the row, column and region can put back
+    int[][] grid = copy(JIGSAW_SOLUTION);
+    for (int i = 0; i != 4; i++) {
+      grid[i][(i + 1) % 4] = 0;
+    }
+    assertEquals(Outcome.SOLVED, SudokuSingles.fill(grid, layout));
+    assertArrayEquals(JIGSAW_SOLUTION, grid);
+
+    // the solution repeats values in the usual squares
+    assertEquals(Outcome.CONTRADICTION, SudokuSingles.fill(copy(JIGSAW_SOLUTION)));
+  }
+
+  @Test
+  void leavesGridsTooBigForTheMasks() {
+    int[][] grid = new int[81][81];
+    grid[0][0] = 1;
+    assertEquals(Outcome.PARTIAL, SudokuSingles.fill(grid));
+    assertEquals(1, grid[0][0]);
+    assertEquals(0, grid[0][1]);
+  }
+
+
+  private static int[][] copy(int[][] grid) {
+    int[][] copy = new int[grid.length][];
+    for (int row = 0; row != grid.length; row++) {
+      copy[row] = grid[row].clone();
+    }
+    return copy;
+  }
+}